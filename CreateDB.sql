@@ -136,8 +136,21 @@ create sequence worker_id_seq
     no minvalue
     cache 1;
 
+-- блоки id элементов: шаг последовательности - размер блока, nextval - верхняя граница блока
+-- (не включительно), сервер выдаёт id из [nextval - 1000, nextval); первый блок начинается с 100000,
+-- чтобы не пересекаться со старыми случайными id из диапазона [0, 100000).
+-- Переход со схемы hi/lo с шагом 1: alter sequence worker_key_seq increment by 1000
+--     restart with <(last_value + 2) * 1000>;
+drop sequence if exists worker_key_seq;
+
+create sequence worker_key_seq
+    increment by 1000
+    start with 101000
+    no maxvalue
+    cache 1;
+
 create table worker(id integer default nextval('worker_id_seq') not null primary key,
-    worker_id int,
+    worker_id bigint not null unique,
     name text,
     creationdate timestamp not null default current_timestamp,
     salary int check(salary >= 0),
@@ -149,6 +162,36 @@ create table worker(id integer default nextval('worker_id_seq') not null primary
     user_id int references user_worker
     );
 
+-- журнал изменений worker для тёплого старта: сервер загружает локальный снимок и
+-- перечитывает из БД только элементы, изменённые после номера, записанного в снимке
+-- записи удаляет сервер: после каждого снимка - учтённые во всех хранимых снимках, а при
+-- выключенных снимках (server.snapshot.interval <= 0) - все, раз в server.changelog.prune секунд
+drop table if exists worker_change_log cascade;
+
+create table worker_change_log(seq bigserial primary key,
+    worker_id bigint not null,
+    op char(1) not null,
+    changed_at timestamp not null default current_timestamp
+    );
+
+create or replace function log_worker_change() returns trigger as $$
+begin
+    if (tg_op = 'DELETE') then
+        insert into worker_change_log(worker_id, op) values (old.worker_id, 'D');
+        return old;
+    end if;
+    insert into worker_change_log(worker_id, op) values (new.worker_id, left(tg_op, 1));
+    if (tg_op = 'UPDATE' and new.worker_id <> old.worker_id) then
+        insert into worker_change_log(worker_id, op) values (old.worker_id, 'U');
+    end if;
+    return new;
+end;
+$$ language plpgsql;
+
+create trigger worker_change_log_trigger
+    after insert or update or delete on worker
+    for each row execute function log_worker_change();
+
 select * from worker;
 
 select current_date;
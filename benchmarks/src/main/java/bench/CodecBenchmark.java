@@ -0,0 +1,77 @@
+package bench;
+
+import model.CommandCollection;
+import model.Message;
+import model.MessageCodec;
+import model.Worker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CodecBenchmark} Кодирование и декодирование ответа {@code SHOW} тем же {@link MessageCodec},
+ * что использует {@code ServerUp.serialize}/{@code deserialize}, в двоичном и Java-формате
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CodecBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int workers;
+
+    @Param({"BINARY", "JAVA"})
+    MessageCodec.Format format;
+
+    private Message message;
+    private ByteBuffer out;
+    private ByteBuffer encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Worker> list = Fixtures.workers(workers, Fixtures.SEED);
+        ConcurrentHashMap<Long, Worker> map = new ConcurrentHashMap<>();
+        long id = 1;
+        for (Worker worker : list) {
+            worker.setId(id);
+            map.put(id++, worker);
+        }
+        message = new Message(CommandCollection.SHOW, map);
+        out = ByteBuffer.allocateDirect(16 * 1024 * 1024);
+        MessageCodec.write(message, format, out);
+        out.flip();
+        encoded = ByteBuffer.allocateDirect(out.remaining());
+        encoded.put(out);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        out.clear();
+        MessageCodec.write(message, format, out);
+        return out.position();
+    }
+
+    @Benchmark
+    public Message decode() throws IOException {
+        return MessageCodec.read(encoded.duplicate());
+    }
+}
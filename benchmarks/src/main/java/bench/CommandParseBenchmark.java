@@ -0,0 +1,47 @@
+package bench;
+
+import model.CommandCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CommandParseBenchmark} Разбор строки команды {@link CommandCollection#fromCmd(String)}:
+ * первая и последняя команды перечисления, команды из двух слов с аргументом и неизвестная команда
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandParseBenchmark {
+
+    private final String[] commands = {
+            "help",
+            "show",
+            "insert",
+            "update id 17",
+            "remove key 42",
+            "removeEndDate 2021-03-01",
+            "printEndDate",
+            "login",
+            "no such command"
+    };
+
+    @Benchmark
+    public void fromCmd(Blackhole blackhole) {
+        for (String command : commands) {
+            blackhole.consume(CommandCollection.fromCmd(command));
+        }
+    }
+}
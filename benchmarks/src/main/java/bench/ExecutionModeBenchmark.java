@@ -0,0 +1,101 @@
+package bench;
+
+import net.RequestExecutor;
+import net.VirtualRequestExecutor;
+import net.interfaces.InterfaceRequestExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ExecutionModeBenchmark} Пул потоков и виртуальные потоки на одной нагрузке: пачка из
+ * {@link #REQUESTS} запросов, каждый держит разрешение на работу с БД ({@code server.db.permits} в
+ * {@code ServerUp}) и блокируется на время имитации JDBC-вызова. Результат — время на запрос при
+ * полной пачке.
+ *
+ * <p>Проект собирается под Java 17, а режим {@code virtual} требует JVM 21+, поэтому по умолчанию
+ * измеряется только {@code pool}. Сравнение запускается тем же jar на JDK 21+ с {@code -p mode=pool,virtual};
+ * на более старой JVM вариант {@code virtual} завершается ошибкой.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    static final int REQUESTS = 2000;
+
+    @Param({"pool"})
+    String mode;
+
+    @Param({"1"})
+    int dbMillis;
+
+    @Param({"32"})
+    int dbPermits;
+
+    private InterfaceRequestExecutor executor;
+    private Semaphore db;
+    private volatile CountDownLatch latch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new Semaphore(dbPermits);
+        if ("virtual".equals(mode)) {
+            if (!VirtualRequestExecutor.isSupported()) {
+                throw new IllegalStateException("virtual mode requires JDK 21+, running on " + Runtime.version());
+            }
+            executor = new VirtualRequestExecutor(REQUESTS, task -> latch.countDown());
+        } else {
+            executor = new RequestExecutor(Runtime.getRuntime().availableProcessors() * 2, REQUESTS,
+                    RequestExecutor.OverloadPolicy.REJECT_BUSY, task -> latch.countDown());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public long burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        latch = done;
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(() -> {
+                try {
+                    db.acquire();
+                    try {
+                        Thread.sleep(dbMillis);
+                    } finally {
+                        db.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return executor.getRejected();
+    }
+}
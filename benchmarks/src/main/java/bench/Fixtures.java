@@ -0,0 +1,63 @@
+package bench;
+
+import model.Color;
+import model.Status;
+import model.User;
+import model.Worker;
+import model.WorkerFabric;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@code Fixtures} Детерминированные наборы элементов для бенчмарков: одинаковое зерно даёт одинаковые
+ * данные в каждом прогоне, поэтому результаты разных версий сравнимы между собой
+ */
+final class Fixtures {
+
+    static final long SEED = 42L;
+    static final int USERS = 8;
+    static final long BASE_MILLIS = 1_600_000_000_000L;
+
+    private Fixtures() {
+    }
+
+    static User user(long userId) {
+        User user = new User("user" + userId, null);
+        user.setUserId(userId);
+        return user;
+    }
+
+    /**
+     * Элементы без id, как их присылает клиент
+     */
+    static List<Worker> workers(int count, long seed) {
+        Random random = new Random(seed);
+        List<User> users = new ArrayList<>(USERS);
+        for (long i = 0; i < USERS; i++) {
+            users.add(user(i + 1));
+        }
+        Status[] statuses = Status.values();
+        Color[] colors = Color.values();
+        List<Worker> workers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            workers.add(WorkerFabric.create(
+                    "worker" + i,
+                    random.nextFloat() * 100,
+                    random.nextInt(92),
+                    random.nextInt(100_000),
+                    LocalDate.ofEpochDay(18_000 + random.nextInt(1_000)),
+                    new Date(BASE_MILLIS + random.nextInt(1_000) * 86_400_000L),
+                    statuses[random.nextInt(statuses.length)],
+                    150 + random.nextFloat() * 50,
+                    50 + random.nextInt(50),
+                    colors[random.nextInt(colors.length)],
+                    users.get(random.nextInt(USERS))
+            ));
+        }
+        return workers;
+    }
+}
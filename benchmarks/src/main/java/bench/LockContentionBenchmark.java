@@ -0,0 +1,89 @@
+package bench;
+
+import core.WorkerCollection;
+import model.Worker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code LockContentionBenchmark} Изменения {@link WorkerCollection} из {@value #THREADS} потоков одновременно:
+ * у каждого потока свой пользователь ({@code disjoint}) или у всех один ({@code shared}). Полосы
+ * блокировок по пользователям ({@code stripes=64}, как на сервере) сравниваются с одной общей
+ * блокировкой ({@code stripes=1}); {@code dbMicros} - время имитируемого запроса к БД, которое
+ * выполняется под блокировкой пользователя
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(LockContentionBenchmark.THREADS)
+@Fork(1)
+public class LockContentionBenchmark {
+
+    static final int THREADS = 8;
+
+    @Param({"64", "1"})
+    int stripes;
+
+    @Param({"disjoint", "shared"})
+    String owners;
+
+    @Param({"0", "50"})
+    int dbMicros;
+
+    private WorkerCollection collection;
+    private final AtomicInteger clients = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AtomicLong ids = new AtomicLong();
+        collection = new WorkerCollection(new StubWorkerDB(dbMicros), ids::incrementAndGet, Fixtures::user,
+                stripes, false);
+        collection.insertBatch(Fixtures.workers(10_000, Fixtures.SEED));
+    }
+
+    /**
+     * {@code Client} Состояние одного потока: его пользователь и свои заготовленные элементы
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        long userId;
+        List<Worker> fresh;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(LockContentionBenchmark benchmark) {
+            int n = benchmark.clients.incrementAndGet();
+            userId = "shared".equals(benchmark.owners) ? 1 : n;
+            fresh = Fixtures.workers(1024, Fixtures.SEED + n);
+            for (Worker worker : fresh) {
+                worker.setUser(Fixtures.user(userId));
+            }
+        }
+    }
+
+    @Benchmark
+    public long insertRemove(Client client) {
+        Worker worker = client.fresh.get(client.next++ & 1023);
+        collection.insert(worker);
+        collection.removeKey(worker.getId(), client.userId);
+        return worker.getId();
+    }
+}
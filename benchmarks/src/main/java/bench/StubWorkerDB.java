@@ -0,0 +1,153 @@
+package bench;
+
+import db.interfaces.InterfaceWorkerDB;
+import model.Worker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * {@code StubWorkerDB} БД в памяти для бенчмарков коллекции: принимает все вставки и удаляет по тем же
+ * условиям, что SQL в {@code DBWorkerUtils}, поэтому коллекция получает правдоподобные списки id.
+ * Задержка имитирует время запроса к БД у изменяющих операций
+ */
+class StubWorkerDB implements InterfaceWorkerDB {
+
+    private final ConcurrentHashMap<Long, Worker> rows = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+
+    StubWorkerDB() {
+        this(0);
+    }
+
+    /**
+     * @param latencyMicros задержка каждой вставки, изменения и удаления
+     */
+    StubWorkerDB(long latencyMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    private void roundTrip() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    @Override
+    public boolean insertWorker(Worker worker) {
+        roundTrip();
+        rows.put(worker.getId(), worker);
+        return true;
+    }
+
+    @Override
+    public boolean[] insertWorkers(List<Worker> workers) {
+        roundTrip();
+        boolean[] results = new boolean[workers.size()];
+        for (int i = 0; i < results.length; i++) {
+            Worker worker = workers.get(i);
+            rows.put(worker.getId(), worker);
+            results[i] = true;
+        }
+        return results;
+    }
+
+    @Override
+    public boolean updateWorker(Worker worker) {
+        roundTrip();
+        return rows.replace(worker.getId(), worker) != null;
+    }
+
+    @Override
+    public List<Long> deleteWorkerById(long id, long currentUserId) {
+        roundTrip();
+        Worker worker = rows.get(id);
+        if (worker == null || worker.getUserId() != currentUserId || !rows.remove(id, worker)) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(id);
+    }
+
+    @Override
+    public List<Long> deleteWorker(long currentUserId) {
+        return delete(currentUserId, w -> true);
+    }
+
+    @Override
+    public List<Long> deleteWorkerByGreaterSalary(int salary, long currentUserId) {
+        return delete(currentUserId, w -> w.getSalary() != null && w.getSalary() > salary);
+    }
+
+    @Override
+    public List<Long> deleteWorkerByLowerSalary(int salary, long currentUserId) {
+        return delete(currentUserId, w -> w.getSalary() != null && w.getSalary() < salary);
+    }
+
+    @Override
+    public List<Long> deleteWorkerByEndDate(Date endDate, long currentUserId) {
+        return delete(currentUserId, w -> endDate.equals(w.getEndDate()));
+    }
+
+    @Override
+    public List<Long> deleteWorkerByStartDate(LocalDate startDate, long currentUserId) {
+        return delete(currentUserId, w -> startDate.equals(w.getStartDate()));
+    }
+
+    @Override
+    public ConcurrentHashMap<Long, Worker> getWorkers() {
+        return new ConcurrentHashMap<>(rows);
+    }
+
+    @Override
+    public ConcurrentHashMap<Long, Worker> getWorkersByIds(Collection<Long> ids) {
+        ConcurrentHashMap<Long, Worker> result = new ConcurrentHashMap<>();
+        for (Long id : ids) {
+            Worker worker = rows.get(id);
+            if (worker != null) {
+                result.put(id, worker);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long countWorkers() {
+        return rows.size();
+    }
+
+    @Override
+    public long getChangeWatermark() {
+        return 0;
+    }
+
+    @Override
+    public Set<Long> getChangedIds(long watermark) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void pruneChangeLog(long watermark) {
+    }
+
+    private List<Long> delete(long currentUserId, Predicate<Worker> predicate) {
+        roundTrip();
+        List<Long> ids = new ArrayList<>();
+        rows.values().removeIf(w -> {
+            if (w.getUserId() == currentUserId && predicate.test(w)) {
+                ids.add(w.getId());
+                return true;
+            }
+            return false;
+        });
+        return ids;
+    }
+}
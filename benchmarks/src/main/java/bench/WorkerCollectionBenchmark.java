@@ -0,0 +1,85 @@
+package bench;
+
+import core.WorkerCollection;
+import model.Worker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code WorkerCollectionBenchmark} Пропускная способность {@link WorkerCollection} без БД: вставка с
+ * удалением, удаление по условию, под которое не попадает ни один элемент пользователя (отсекается
+ * вторичным индексом или проходом по столбцам), и выборка по зарплате через
+ * {@link WorkerCollection#getFilter()} в сравнении с полным проходом по собранным объектам
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WorkerCollectionBenchmark {
+
+    static final long OWNER = 1;
+
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"map", "columnar"})
+    String store;
+
+    private WorkerCollection collection;
+    private List<Worker> fresh;
+    private int next;
+    private int threshold;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AtomicLong ids = new AtomicLong();
+        collection = new WorkerCollection(new StubWorkerDB(), ids::incrementAndGet, Fixtures::user,
+                64, "columnar".equals(store));
+        collection.insertBatch(Fixtures.workers(size, Fixtures.SEED));
+        fresh = Fixtures.workers(1024, Fixtures.SEED + 1);
+        threshold = 99_000;
+    }
+
+    @Benchmark
+    public long insertRemove() {
+        Worker worker = fresh.get(next++ & 1023);
+        collection.insert(worker);
+        collection.removeKey(worker.getId(), worker.getUserId());
+        return collection.getVersion();
+    }
+
+    @Benchmark
+    public long removeGreaterNoMatch() {
+        collection.removeGreater(Integer.MAX_VALUE - 1, OWNER);
+        return collection.getVersion();
+    }
+
+    @Benchmark
+    public int scanFilter() {
+        return collection.getFilter().salaryGreater(threshold).size();
+    }
+
+    @Benchmark
+    public long scanLinear() {
+        int limit = threshold;
+        return collection.getWorkers().values().stream()
+                .filter(w -> w.getSalary() != null && w.getSalary() > limit)
+                .count();
+    }
+}
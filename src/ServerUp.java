@@ -1,21 +1,49 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
+import core.SnapshotStore;
 import core.WorkerCollection;
+import db.DBConnection;
+import db.DBUserRegistry;
+import db.DBUserUtils;
+import db.UserCredentials;
 import model.CommandCollection;
+import model.Hasher;
 import model.Message;
+import model.MessageCodec;
 import model.User;
 import model.Worker;
+import net.BufferPool;
+import net.ChunkedResponses;
+import net.PasswordVerifier;
+import net.RequestExecutor;
+import net.ResponseCache;
+import net.ServerMetrics;
+import net.SessionTable;
+import net.VirtualRequestExecutor;
+import net.interfaces.InterfaceRequestExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,18 +53,82 @@ public class ServerUp {
     static final String LOCALHOST = "localhost";
     static final int PORT_SERVER = 9023;
     static final int PORT_CLIENT = 43245;
+    static final int BUFFER_SIZE = 1024 * 20;
+    static final int MAX_DATAGRAM_SIZE = 65507;
+    static final int CHUNK_SIZE = Integer.getInteger("server.chunk.size", 1400);
+    static final int SEND_ATTEMPTS = 100;
+    static final int MAX_RESPONSE_SIZE = Integer.getInteger("server.response.max", 64 * 1024 * 1024);
     private final String serverAddr;
-    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
-            1,
-            Integer.MAX_VALUE,
-            60L,
-            TimeUnit.SECONDS,
-            new SynchronousQueue<>()
+    static final boolean VIRTUAL_THREADS = "virtual".equalsIgnoreCase(System.getProperty("server.mode", "pool"));
+    static final int MAX_IN_FLIGHT = Integer.getInteger("server.virtual.max", 2048);
+    /** не больше соединений в пуле: иначе запрос с разрешением всё равно ждёт соединение до таймаута пула */
+    static final int DB_PERMITS = Integer.getInteger("server.db.permits", DBConnection.getPool().getMaxSize());
+    static final EnumSet<CommandCollection> DB_COMMANDS = EnumSet.of(
+            CommandCollection.LOGIN,
+            CommandCollection.INSERT,
+            CommandCollection.INSERT_BATCH,
+            CommandCollection.UPDATE_ID,
+            CommandCollection.REMOVE_KEY,
+            CommandCollection.CLEAR,
+            CommandCollection.REMOVE_GREATER,
+            CommandCollection.REMOVE_LOWER,
+            CommandCollection.REMOVE_ALL_BY_END_DATE,
+            CommandCollection.REMOVE_ALL_BY_START_DATE
     );
+    static final int WORKER_THREADS = Integer.getInteger("server.threads",
+            Runtime.getRuntime().availableProcessors() * 2);
+    static final int QUEUE_DEPTH = Integer.getInteger("server.queue", 1024);
+    /**
+     * Буфер занят каждым запросом от приёма до конца обработки, поэтому пул вмещает все запросы, которые
+     * исполнитель может держать одновременно, плюс буфер цикла приёма. Иначе цикл приёма блокируется
+     * на пустом пуле раньше, чем переполнится очередь, и политика перегрузки не срабатывает.
+     */
+    static final int BUFFER_POOL_SIZE = Math.max(Integer.getInteger("server.buffers", 0),
+            (VIRTUAL_THREADS ? MAX_IN_FLIGHT : WORKER_THREADS + QUEUE_DEPTH) + 1);
+    static final RequestExecutor.OverloadPolicy OVERLOAD_POLICY =
+            RequestExecutor.OverloadPolicy.fromStr(System.getProperty("server.overload", "reject_busy"));
+    static final int STATS_INTERVAL = Integer.getInteger("server.stats.interval", 60);
+    static final int SNAPSHOT_INTERVAL = Integer.getInteger("server.snapshot.interval", 300);
+    static final int CHANGELOG_PRUNE_INTERVAL = Math.max(1, Integer.getInteger("server.changelog.prune", 300));
+    static final int SESSION_TTL = Integer.getInteger("server.session.ttl", 1800);
+    /**
+     * Все команды, кроме {@link #OPEN_COMMANDS}, требуют токен сессии. {@code false} включает старый режим
+     * для клиентов без входа, где владелец берётся из присланного элемента
+     */
+    static final boolean AUTH_REQUIRED = Boolean.parseBoolean(System.getProperty("server.auth.required", "true"));
+    /** команды без токена: вход и повторная отправка частей, привязанная к адресу клиента */
+    static final EnumSet<CommandCollection> OPEN_COMMANDS = EnumSet.of(
+            CommandCollection.LOGIN,
+            CommandCollection.RESEND
+    );
+    private final BufferPool bufferPool = new BufferPool(BUFFER_POOL_SIZE, BUFFER_SIZE);
+    private final ThreadLocal<ByteBuffer> encodeBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE));
+    private final ThreadLocal<ByteBuffer> responseBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_DATAGRAM_SIZE));
+    private final ThreadLocal<ByteBuffer> chunkBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+    private volatile DatagramChannel channel;
+    private final ResponseCache responseCache = new ResponseCache();
+    private final ChunkedResponses chunkedResponses = new ChunkedResponses(CHUNK_SIZE, 256,
+            Long.getLong("server.resend.bytes", 64L * 1024 * 1024), 30_000L);
+    private final Semaphore dbPermits = new Semaphore(DB_PERMITS);
+    private final SessionTable sessions = new SessionTable(TimeUnit.SECONDS.toMillis(SESSION_TTL));
+    private final PasswordVerifier passwordVerifier = new PasswordVerifier(
+            Integer.getInteger("hasher.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 4)),
+            Integer.getInteger("hasher.queue", 64),
+            Integer.getInteger("hasher.cache.size", 1024),
+            TimeUnit.SECONDS.toMillis(Integer.getInteger("hasher.cache.ttl", 60)));
+    InterfaceRequestExecutor requestExecutor = createRequestExecutor();
 
 
 
     WorkerCollection collection = new WorkerCollection();
+    private final ServerMetrics metrics = new ServerMetrics(() -> collection.size(), responseCache,
+            requestExecutor);
+    private final SnapshotStore snapshotStore = new SnapshotStore(
+            Paths.get(System.getProperty("server.snapshot.dir", "snapshots")),
+            Integer.getInteger("server.snapshot.retain", 2));
 
     public ServerUp(String serverAddr) {
         this.serverAddr = serverAddr;
@@ -47,8 +139,17 @@ public class ServerUp {
         initCollection();
     }
 
+    /**
+     * С выключенными снимками журнал изменений не хранится, поэтому старые снимки удаляются:
+     * после включения тёплый старт с них пропустил бы изменения из очищенного журнала
+     */
     private void initCollection() {
-        this.collection.load();
+        if (SNAPSHOT_INTERVAL > 0) {
+            this.collection.warmStart(snapshotStore);
+        } else {
+            snapshotStore.clear();
+            this.collection.load();
+        }
     }
 
 
@@ -56,155 +157,562 @@ public class ServerUp {
 
         private ByteBuffer buf;
         private InetSocketAddress cln;
+        private long receivedAt;
 
         @Override
         public void run() {
             LOG.info("Receive buffer: " + buf.toString());
-            processRequest(this.buf, this.cln);
+            ServerMetrics.Trace trace = metrics.begin(this.receivedAt, this.buf.remaining());
+            try {
+                processRequest(this.buf, this.cln, trace);
+            } finally {
+                metrics.end(trace);
+                bufferPool.release(this.buf);
+            }
         }
 
         public Runnable init(ByteBuffer buf, InetSocketAddress cln) {
             this.buf = buf;
             this.cln = cln;
+            this.receivedAt = System.nanoTime();
             return this;
         }
 
+        /**
+         * Запрос отброшен пулом: возвращаем буфер и, если так требует политика, отвечаем "busy"
+         */
+        void reject(boolean replyBusy) {
+            MessageCodec.Format format = MessageCodec.detect(this.buf);
+            bufferPool.release(this.buf);
+            metrics.rejected();
+            if (replyBusy) {
+                try {
+                    sendMessage(serialize(new Message(CommandCollection.BUSY), format), this.cln);
+                } catch (IOException e) {
+                    LOG.debug(e.getLocalizedMessage());
+                }
+            }
+        }
+
     }
 
+    private InterfaceRequestExecutor createRequestExecutor() {
+        if (VIRTUAL_THREADS) {
+            if (VirtualRequestExecutor.isSupported()) {
+                return new VirtualRequestExecutor(MAX_IN_FLIGHT, this::onDrop);
+            }
+            LOG.info("Virtual threads are not supported by this JVM, falling back to the thread pool");
+        }
+        return new RequestExecutor(WORKER_THREADS, QUEUE_DEPTH, OVERLOAD_POLICY, this::onDrop);
+    }
 
-    public void run() {
+    private void onDrop(Runnable task) {
+        if (task instanceof ProcessTask) {
+            boolean replyBusy = VIRTUAL_THREADS || OVERLOAD_POLICY == RequestExecutor.OverloadPolicy.REJECT_BUSY;
+            ((ProcessTask) task).reject(replyBusy);
+        }
+    }
+
+    private void startStatsLogger() {
+        if (STATS_INTERVAL <= 0) {
+            return;
+        }
+        ScheduledExecutorService stats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats");
+            t.setDaemon(true);
+            return t;
+        });
+        stats.scheduleAtFixedRate(() -> {
+                    LOG.info(requestExecutor.toString());
+                    LOG.info(DBConnection.getPool().toString());
+                    LOG.info(passwordVerifier.toString());
+                    LOG.info(metrics.toString());
+                },
+                STATS_INTERVAL, STATS_INTERVAL, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Периодически сохраняет снимок коллекции для тёплого старта. Если снимки выключены, журнал
+     * изменений, который заполняет триггер, всё равно очищается с тем же периодом по умолчанию
+     */
+    private void startSnapshots() {
+        ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        if (SNAPSHOT_INTERVAL > 0) {
+            snapshots.scheduleWithFixedDelay(() -> collection.snapshot(snapshotStore),
+                    SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL, TimeUnit.SECONDS);
+        } else {
+            snapshots.scheduleWithFixedDelay(collection::pruneChangeLog, 0, CHANGELOG_PRUNE_INTERVAL,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     * Публикует метрики в платформенном MBean-сервере как {@code lab6_7:type=ServerMetrics}
+     * и подключает к ним учёт времени работы с БД из пула соединений
+     */
+    private void registerMetrics() {
+        DBConnection.getPool().setUsageListener(metrics::addDb);
         try {
-            ByteBuffer buffer = ByteBuffer.allocate(1024 * 20);
-            DatagramChannel server = DatagramChannel.open();
-            server.configureBlocking(true);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("lab6_7:type=ServerMetrics"));
+        } catch (JMException e) {
+            LOG.debug(e.getMessage());
+        }
+    }
+
+
+    public void run() {
+        try (Selector selector = Selector.open();
+             DatagramChannel server = DatagramChannel.open()) {
+            server.configureBlocking(false);
             InetSocketAddress iAdd = new InetSocketAddress(LOCALHOST, PORT_SERVER);
             server.bind(iAdd);
+            server.register(selector, SelectionKey.OP_READ);
+            this.channel = server;
+            registerMetrics();
+            startStatsLogger();
+            startSnapshots();
+            ByteBuffer buffer = bufferPool.acquire();
             while (true) {
-                buffer.clear();
-                SocketAddress client = server.receive(buffer);
-                if (client != null) {
-                    buffer.flip();
-                    ProcessTask task = new ProcessTask();
-                    threadPoolExecutor.submit(task.init(buffer, (InetSocketAddress) client));
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid() || !key.isReadable()) {
+                        continue;
+                    }
+                    SocketAddress client;
+                    while ((client = server.receive(buffer)) != null) {
+                        buffer.flip();
+                        ProcessTask task = new ProcessTask();
+                        requestExecutor.execute(task.init(buffer, (InetSocketAddress) client));
+                        buffer = bufferPool.acquire();
+                    }
                 }
             }
         } catch (IOException e) {
             LOG.info(e.getLocalizedMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.info(e.getLocalizedMessage());
         } catch (Exception e) {
             LOG.info(e.getLocalizedMessage());
         }
     }
-    private synchronized void processRequest(ByteBuffer buffer, InetSocketAddress client) {
+    /**
+     * Проверяет логин и пароль один раз и открывает сессию. В потоке запроса читаются только хранимые
+     * данные пользователя; хэширование и ответ клиенту выполняет пул {@link PasswordVerifier}
+     */
+    private void login(Message message, MessageCodec.Format format, InetSocketAddress client) throws IOException {
+        User user = message.getWorker() == null ? null : message.getWorker().getUser();
+        if (user == null || user.getUserName() == null) {
+            sendResponse(encode(new Message(CommandCollection.LOGIN, (String) null), format), format, client, false);
+            return;
+        }
+        DBUserUtils dbUserUtils = new DBUserUtils();
+        UserCredentials credentials = dbUserUtils.getCredentials(user.getUserName());
+        String stored = credentials == null ? null : credentials.getPasswordHash();
+        passwordVerifier.verify(user.getUserName(), user.getUserPassword(), stored).whenComplete((ok, error) -> {
+            Message reply;
+            if (error != null) {
+                reply = new Message(CommandCollection.BUSY);
+            } else if (ok) {
+                DBUserRegistry.register(credentials.getUserId(), user.getUserName());
+                reply = new Message(CommandCollection.LOGIN, sessions.open(credentials.getUserId()));
+                if (Hasher.needsRehash(stored)) {
+                    passwordVerifier.hash(user.getUserPassword()).thenAccept(hash ->
+                            dbUserUtils.updatePasswordHash(credentials.getUserId(), stored, hash));
+                }
+            } else {
+                LOG.info(String.format("Login failed: %s", user.getUserName()));
+                reply = new Message(CommandCollection.LOGIN, (String) null);
+            }
+            try {
+                sendResponse(encode(reply, format), format, client, false);
+            } catch (IOException e) {
+                LOG.debug(e.getLocalizedMessage());
+            }
+        });
+    }
+
+    /**
+     * Владельцем элементов запроса с токеном становится пользователь сессии, а не присланный клиентом
+     */
+    private static void bindOwner(Message message, User owner) {
+        if (message.getWorker() != null) {
+            message.getWorker().setUser(owner);
+        }
+        if (message.getBatch() != null) {
+            for (Worker worker : message.getBatch()) {
+                worker.setUser(owner);
+            }
+        }
+    }
+
+    private void processRequest(ByteBuffer buffer, InetSocketAddress client, ServerMetrics.Trace trace) {
         try {
+            MessageCodec.Format format = MessageCodec.detect(buffer);
             Message message = deserialize(buffer);
             if (message != null) {
                 CommandCollection cmd = message.getCollection();
+                trace.setCommand(cmd);
                 Long currentUserId = -1L;
-                if(message.getWorker() != null) {
-                    currentUserId =  message.getWorker().getUserId();
+                if (message.getToken() != null) {
+                    currentUserId = sessions.validate(message.getToken());
+                    if (currentUserId == null) {
+                        sendResponse(encode(new Message(CommandCollection.LOGIN, (String) null), format),
+                                format, client, false);
+                        return;
+                    }
+                    bindOwner(message, DBUserRegistry.get(currentUserId));
+                } else if (AUTH_REQUIRED && !OPEN_COMMANDS.contains(cmd)) {
+                    sendResponse(encode(new Message(CommandCollection.LOGIN, (String) null), format), format, client,
+                            false);
+                    return;
+                } else if (message.getWorker() != null && message.getWorker().getUser() != null) {
+                    currentUserId = message.getWorker().getUserId();
                 }
                 if (cmd != null) {
                     LOG.debug(cmd.getCommand());
-                    switch (cmd) {
-                        case INSERT:
-                            collection.insert(message.getWorker());
-                            break;
+                    boolean dbWork = DB_COMMANDS.contains(cmd);
+                    if (dbWork && !acquireDbPermit(format, client, trace)) {
+                        return;
+                    }
+                    trace.executing();
+                    try {
+                        switch (cmd) {
+                            case INSERT:
+                                collection.insert(message.getWorker());
+                                break;
+
+                            case INSERT_BATCH:
+                                if (message.getBatch() != null) {
+                                    boolean[] results = collection.insertBatch(message.getBatch());
+                                    sendResponse(encode(new Message(CommandCollection.INSERT_BATCH, results), format),
+                                            format, client);
+                                }
+                                break;
+
+                            case UPDATE_ID:
+                                collection.update(message.getWorker());
+                                break;
+
+                            case SHOW:
+                                sendResponse(cachedResponse(CommandCollection.SHOW, format,
+                                        () -> new Message(CommandCollection.SHOW, collection.getWorkers())),
+                                        format, client);
+                                break;
+
+                            case INFO:
+                                sendResponse(cachedResponse(CommandCollection.INFO, format,
+                                        () -> new Message(
+                                                CommandCollection.INFO,
+                                                collection.getInitData(),
+                                                collection.getWorkers()
+                                        )),
+                                        format, client);
+                                break;
+
+                            case REMOVE_KEY:
+                                collection.removeKey(message.getKey(), currentUserId);
+                                break;
+
+                            case CLEAR:
+                                collection.clear(currentUserId);
+                                break;
+
+                            case REMOVE_GREATER:
+                                collection.removeGreater(message.getSalary(), currentUserId);
+                                break;
+
+                            case REMOVE_LOWER:
+                                collection.removeLower(message.getSalary(), currentUserId);
+                                break;
+
+                            case REMOVE_ALL_BY_END_DATE:
+                                collection.removeAllByEndDate(message.getDate(), currentUserId);
+                                break;
+
+                            case REMOVE_ALL_BY_START_DATE:
+                                collection.removeAnyByStartDate(message.getStartDate(), currentUserId);
+                                break;
+
+                            case PRINT_FIELD_DESCENDING_END_DATE:
+                                int offset = message.getOffset() == null ? 0 : message.getOffset();
+                                int limit = message.getLimit() == null ? -1 : message.getLimit();
+                                if (offset == 0 && limit < 0) {
+                                    sendResponse(cachedResponse(CommandCollection.PRINT_FIELD_DESCENDING_END_DATE,
+                                            format, () -> new Message(
+                                                    CommandCollection.PRINT_FIELD_DESCENDING_END_DATE,
+                                                    collection.getFilter().endDaysDescending(0, -1)
+                                            )),
+                                            format, client);
+                                } else {
+                                    Message page = new Message(
+                                            CommandCollection.PRINT_FIELD_DESCENDING_END_DATE,
+                                            collection.getFilter().endDaysDescending(offset, limit)
+                                    );
+                                    sendResponse(encode(page, format), format, client);
+                                }
+                                break;
+
+                            case RESEND:
+                                resendChunks(message.getResponseId(), message.getChunks(), client);
+                                break;
+
+                            case LOGIN:
+                                login(message, format, client);
+                                break;
+
+                        }
+                    } finally {
+                        if (dbWork) {
+                            dbPermits.release();
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            trace.failed();
+            LOG.warn(String.format("Request from %s failed", client), e);
+        }
+    }
 
-                        case UPDATE_ID:
-                            collection.update(message.getWorker());
-                            break;
+    private void sendResponse(byte[] payload, MessageCodec.Format format, InetSocketAddress client)
+            throws IOException {
+        sendResponse(payload, format, client, true);
+    }
 
-                        case SHOW:
-                            Message clientMessageShow = new Message(CommandCollection.SHOW, collection.getWorkers());
-                            sendMessage(serialize(clientMessageShow), client);
-                            break;
+    /**
+     * Ждёт разрешения на работу с БД. Если поток прервали, клиент получает {@code BUSY}, а флаг
+     * прерывания восстанавливается уже после ответа: отправка в прерванном потоке закрыла бы общий
+     * канал сервера ({@link java.nio.channels.ClosedByInterruptException}). Разрешение в этом случае
+     * не получено и освобождать его не нужно
+     *
+     * @return {@code true}, если разрешение получено
+     */
+    private boolean acquireDbPermit(MessageCodec.Format format, InetSocketAddress client,
+                                    ServerMetrics.Trace trace) throws IOException {
+        try {
+            dbPermits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            trace.failed();
+            LOG.warn(String.format("Request from %s interrupted while waiting for a db permit", client));
+            try {
+                sendResponse(encode(new Message(CommandCollection.BUSY), format), format, client, false);
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
 
-                        case INFO:
-                            Message clientMessageInfo = new Message(
-                                    CommandCollection.INFO,
-                                    collection.getInitData(),
-                                    collection.getWorkers()
-                            );
-                            sendMessage(serialize(clientMessageInfo), client);
-                            break;
+    /**
+     * Отправляет ответ частями размером с MTU; в формате {@code JAVA} ответ, помещающийся в одну датаграмму,
+     * отправляется целиком. Старые клиенты ({@code LEGACY}) частей не собирают и получают ответ только
+     * одной датаграммой
+     *
+     * @param retain хранить ли ответ для {@code RESEND}; ответы {@code LOGIN} и {@code BUSY} не хранятся,
+     *               клиент при потере просто повторяет запрос
+     */
+    private void sendResponse(byte[] payload, MessageCodec.Format format, InetSocketAddress client,
+                              boolean retain) throws IOException {
+        if (payload == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (format == MessageCodec.Format.LEGACY) {
+                if (payload.length > MAX_DATAGRAM_SIZE) {
+                    LOG.warn(String.format("Response of %d bytes does not fit a datagram for a legacy client %s",
+                            payload.length, client));
+                    return;
+                }
+                sendMessage(ByteBuffer.wrap(payload), client);
+                return;
+            }
+            if (format == MessageCodec.Format.JAVA && payload.length <= MAX_DATAGRAM_SIZE) {
+                sendMessage(ByteBuffer.wrap(payload), client);
+                return;
+            }
+            long responseId = retain ? chunkedResponses.register(payload, client) : chunkedResponses.nextId();
+            sendChunks(responseId, payload, null, client);
+        } finally {
+            metrics.addSend(System.nanoTime() - start);
+            metrics.addResponse(payload.length);
+        }
+    }
 
-                        case REMOVE_KEY:
-                            collection.removeKey(message.getKey(), currentUserId);
-                            break;
+    /**
+     * Закодированный ответ на команду чтения из кэша; строится заново только после изменения коллекции
+     */
+    private byte[] cachedResponse(CommandCollection cmd, MessageCodec.Format format, Supplier<Message> message) {
+        return responseCache.get(cmd, format, collection.getVersion(), () -> encode(message.get(), format));
+    }
 
-                        case CLEAR:
-                            collection.clear(currentUserId);
-                            break;
+    private void resendChunks(Long responseId, int[] chunks, InetSocketAddress client) throws IOException {
+        byte[] payload = responseId == null ? null : chunkedResponses.lookup(responseId, client);
+        if (payload == null) {
+            LOG.debug(String.format("resend: response %s is no longer available", responseId));
+            return;
+        }
+        sendChunks(responseId, payload, chunks, client);
+    }
 
-                        case REMOVE_GREATER:
-                            collection.removeGreater(message.getSalary(), currentUserId);
-                            break;
+    private void sendChunks(long responseId, byte[] payload, int[] chunks, InetSocketAddress client)
+            throws IOException {
+        ByteBuffer buffer = chunkBuffer.get();
+        int total = chunkedResponses.chunkCount(payload.length);
+        boolean all = chunks == null || chunks.length == 0;
+        int count = all ? total : chunks.length;
+        for (int i = 0; i < count; i++) {
+            int seq = all ? i : chunks[i];
+            if (seq < 0 || seq >= total) {
+                continue;
+            }
+            buffer.clear();
+            chunkedResponses.writeChunk(responseId, payload, seq, buffer);
+            buffer.flip();
+            sendMessage(buffer, client);
+        }
+    }
 
-                        case REMOVE_LOWER:
-                            collection.removeLower(message.getSalary(), currentUserId);
-                            break;
+    /**
+     * Отвечает с уже привязанного серверного канала на адрес, с которого пришла датаграмма.
+     * Канал неблокирующий, поэтому при заполненном буфере сокета отправка повторяется с короткой паузой.
+     */
+    private void sendMessage(ByteBuffer buffer, InetSocketAddress clientAddr) throws IOException {
+        DatagramChannel server = this.channel;
+        if (buffer == null || server == null) {
+            return;
+        }
+        for (int attempt = 0; attempt < SEND_ATTEMPTS; attempt++) {
+            if (server.send(buffer, clientAddr) > 0) {
+                return;
+            }
+            LockSupport.parkNanos(50_000L);
+        }
+        LOG.debug(String.format("sendMessage: socket buffer is full, reply to %s dropped", clientAddr));
+    }
 
-                        case REMOVE_ALL_BY_END_DATE:
-                            collection.removeAllByEndDate(message.getDate(), currentUserId);
+    /**
+     * Консоль администратора сервера; команды недоступны клиентам
+     */
+    private void startConsole() {
+        Thread console = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    switch (line.trim()) {
+                        case "reload":
+                            if (collection.load()) {
+                                LOG.info(String.format("Collection reloaded: %d workers", collection.size()));
+                            }
                             break;
-
-                        case REMOVE_ALL_BY_START_DATE:
-                            collection.removeAnyByStartDate(message.getStartDate(), currentUserId);
+                        case "stats":
+                            LOG.info(String.format("Server stats:%n%s", metrics.dump()));
                             break;
-
-                        case PRINT_FIELD_DESCENDING_END_DATE:
-                            Message clientMessageDate = new Message(
-                                    CommandCollection.PRINT_FIELD_DESCENDING_END_DATE,
-                                    collection.getWorkers()
-                            );
-                            sendMessage(serialize(clientMessageDate), client);
+                        case "stats reset":
+                            metrics.reset();
                             break;
-
+                        case "snapshot":
+                            if (SNAPSHOT_INTERVAL <= 0) {
+                                LOG.info("Snapshots are disabled (server.snapshot.interval <= 0)");
+                                break;
+                            }
+                            LOG.info(collection.snapshot(snapshotStore) ? "Snapshot saved" : "Snapshot failed");
+                            break;
+                        case "":
+                            break;
+                        default:
+                            LOG.info(String.format("Unknown console command: %s", line));
                     }
                 }
+            } catch (IOException e) {
+                LOG.debug(e.getLocalizedMessage());
             }
-        } catch (Exception e) {
-            LOG.debug(e.getLocalizedMessage());
-        }
-    }
-
-    private void sendMessage(ByteBuffer buffer, InetSocketAddress clientAddr) throws IOException {
-        String clientHost = clientAddr.getHostName();
-        if (buffer != null) {
-            DatagramChannel client = null;
-            client = DatagramChannel.open();
-            client.bind(null);
-            InetSocketAddress serverAddress = new InetSocketAddress(clientHost, PORT_CLIENT);
-            client.send(buffer, serverAddress);
-            client.close();
-        }
+        }, "console");
+        console.setDaemon(true);
+        console.start();
     }
 
     public static void main(String[] args) {
         ServerUp server = new ServerUp();
+        server.startConsole();
         server.run();
     }
 
     public Message deserialize(ByteBuffer buffer) {
         Message message = null;
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(buffer.array());
-             ObjectInputStream in = new ObjectInputStream(bis)) {
-            message = (Message) in.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            message = MessageCodec.read(buffer);
+        } catch (IOException | RuntimeException e) {
             LOG.debug(e.getMessage());
-            e.printStackTrace();
         }
         return message;
     }
 
     public ByteBuffer serialize(Message message) {
-        ByteBuffer buffer = null;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos)) {
-            oos.writeObject(message);
-            buffer = ByteBuffer.wrap(baos.toByteArray());
-        } catch (IOException e) {
-            e.printStackTrace();
+        return serialize(message, MessageCodec.Format.BINARY);
+    }
+
+    /**
+     * Кодирует сообщение целиком, без ограничения размером датаграммы
+     */
+    public byte[] encode(Message message, MessageCodec.Format format) {
+        long start = System.nanoTime();
+        try {
+            return encodeBytes(message, format);
+        } finally {
+            metrics.addSerialize(System.nanoTime() - start);
+        }
+    }
+
+    private byte[] encodeBytes(Message message, MessageCodec.Format format) {
+        ByteBuffer buffer = responseBuffer.get();
+        while (true) {
+            buffer.clear();
+            try {
+                MessageCodec.write(message, format, buffer);
+                buffer.flip();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= MAX_RESPONSE_SIZE) {
+                    LOG.debug(String.format("encode %s: response exceeds %d bytes",
+                            message.getCollection(), MAX_RESPONSE_SIZE));
+                    return null;
+                }
+                buffer = ByteBuffer.allocate(Math.min(MAX_RESPONSE_SIZE, buffer.capacity() * 2));
+                responseBuffer.set(buffer);
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.debug(String.format("encode %s: %s", message.getCollection(), e));
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Кодирует ответ в переиспользуемый буфер текущего потока; буфер действителен до следующего вызова
+     */
+    public ByteBuffer serialize(Message message, MessageCodec.Format format) {
+        ByteBuffer buffer = encodeBuffer.get();
+        buffer.clear();
+        try {
+            MessageCodec.write(message, format, buffer);
+            buffer.flip();
+        } catch (IOException | BufferOverflowException | IllegalArgumentException e) {
+            LOG.debug(String.format("serialize %s: %s", message.getCollection(), e));
+            return null;
         }
         return buffer;
     }
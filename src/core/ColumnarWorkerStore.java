@@ -0,0 +1,417 @@
+package core;
+
+import core.interfaces.InterfaceWorkerFilter;
+import core.interfaces.InterfaceWorkerStore;
+import model.Color;
+import model.Coordinates;
+import model.Person;
+import model.Status;
+import model.User;
+import model.Worker;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@code ColumnarWorkerStore} Колоночное хранилище: каждое поле элемента лежит в своём примитивном массиве,
+ * строки плотные, id → номер строки в {@link LongIntMap}. startDate и endDate хранятся как эпохальные дни
+ * (endDate - в часовом поясе сервера, с той же точностью, что и в БД), перечисления как порядковые номера;
+ * объекты {@link Worker} собираются только при выдаче наружу.
+ *
+ * <p>Выборки {@link InterfaceWorkerFilter} идут проходом по примитивным массивам без построения объектов,
+ * поэтому в этом режиме {@link WorkerIndex} не строится.
+ *
+ * <p>При удалении на место строки переносится последняя, поэтому массивы не содержат дыр.
+ * Включается свойством {@code server.store=columnar}.
+ */
+public class ColumnarWorkerStore implements InterfaceWorkerStore, InterfaceWorkerFilter {
+
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final byte NULL_ORDINAL = -1;
+    static final byte HAS_COORDINATES = 1;
+    static final byte HAS_PERSON = 1 << 1;
+    static final byte HAS_CREATION_DATE = 1 << 2;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongIntMap rows;
+    private int size;
+
+    private long[] ids;
+    private String[] names;
+    private byte[] flags;
+    private long[] creationSeconds;
+    private int[] creationNanos;
+    private int[] salaries;
+    private int[] startDays;
+    private int[] endDays;
+    private byte[] statuses;
+    private float[] xs;
+    private int[] ys;
+    private float[] heights;
+    private int[] weights;
+    private byte[] colors;
+    private User[] users;
+    private long[] userIds;
+
+    public ColumnarWorkerStore(int expected) {
+        int capacity = Math.max(16, expected);
+        this.rows = new LongIntMap(capacity);
+        this.ids = new long[capacity];
+        this.names = new String[capacity];
+        this.flags = new byte[capacity];
+        this.creationSeconds = new long[capacity];
+        this.creationNanos = new int[capacity];
+        this.salaries = new int[capacity];
+        this.startDays = new int[capacity];
+        this.endDays = new int[capacity];
+        this.statuses = new byte[capacity];
+        this.xs = new float[capacity];
+        this.ys = new int[capacity];
+        this.heights = new float[capacity];
+        this.weights = new int[capacity];
+        this.colors = new byte[capacity];
+        this.users = new User[capacity];
+        this.userIds = new long[capacity];
+    }
+
+    @Override
+    public Worker get(long id) {
+        lock.readLock().lock();
+        try {
+            int row = rows.get(id);
+            return row == LongIntMap.MISSING ? null : materialize(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Worker put(Worker worker) {
+        lock.writeLock().lock();
+        try {
+            long id = worker.getId();
+            int row = rows.get(id);
+            Worker previous = null;
+            if (row == LongIntMap.MISSING) {
+                if (size == ids.length) {
+                    grow(size << 1);
+                }
+                row = size++;
+                rows.put(id, row);
+            } else {
+                previous = materialize(row);
+            }
+            write(row, worker);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Worker remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = rows.remove(id);
+            if (row == LongIntMap.MISSING) {
+                return null;
+            }
+            Worker removed = materialize(row);
+            int last = --size;
+            if (row != last) {
+                move(last, row);
+                rows.put(ids[row], row);
+            }
+            names[last] = null;
+            users[last] = null;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Собирает новую таблицу объектов; результат не связан с хранилищем
+     */
+    @Override
+    public ConcurrentHashMap<Long, Worker> toMap() {
+        lock.readLock().lock();
+        try {
+            ConcurrentHashMap<Long, Worker> map = new ConcurrentHashMap<>(Math.max(16, size * 4 / 3 + 1));
+            for (int row = 0; row < size; row++) {
+                map.put(ids[row], materialize(row));
+            }
+            return map;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Worker> values() {
+        lock.readLock().lock();
+        try {
+            List<Worker> list = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                list.add(materialize(row));
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean owns(long userId, long id) {
+        lock.readLock().lock();
+        try {
+            int row = rows.get(id);
+            return row != LongIntMap.MISSING && userIds[row] == userId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean ownsAny(long userId) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (userIds[row] == userId) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean ownsSalaryGreater(long userId, int salary) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (userIds[row] == userId && salaries[row] != NULL_INT && salaries[row] > salary) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean ownsSalaryLower(long userId, int salary) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (userIds[row] == userId && salaries[row] != NULL_INT && salaries[row] < salary) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean ownsStartDate(long userId, LocalDate startDate) {
+        return ownsDay(startDays, userId, (int) startDate.toEpochDay());
+    }
+
+    @Override
+    public boolean ownsEndDate(long userId, Date endDate) {
+        return ownsDay(endDays, userId, (int) WorkerIndex.endDay(endDate));
+    }
+
+    private boolean ownsDay(int[] days, long userId, int day) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (days[row] == day && userIds[row] == userId) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> salaryGreater(int salary) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                if (salaries[row] != NULL_INT && salaries[row] > salary) {
+                    ids.add(this.ids[row]);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> salaryLower(int salary) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                if (salaries[row] != NULL_INT && salaries[row] < salary) {
+                    ids.add(this.ids[row]);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Копия столбца endDate сортируется на каждый вызов; повторные запросы обслуживает кэш ответов
+     */
+    @Override
+    public int[] endDaysDescending(int offset, int limit) {
+        int[] days;
+        int count = 0;
+        lock.readLock().lock();
+        try {
+            days = new int[size];
+            for (int row = 0; row < size; row++) {
+                if (endDays[row] != NULL_INT) {
+                    days[count++] = endDays[row];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(days, 0, count);
+        int from = count - Math.max(0, offset);
+        int length = Math.max(0, limit < 0 ? from : Math.min(limit, from));
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = days[from - 1 - i];
+        }
+        return result;
+    }
+
+    private static Date endDate(int day) {
+        return Date.from(LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private void write(int row, Worker worker) {
+        byte f = 0;
+        ids[row] = worker.getId();
+        names[row] = worker.getName();
+        LocalDateTime creationDate = worker.getCreationDate();
+        if (creationDate != null) {
+            f |= HAS_CREATION_DATE;
+            creationSeconds[row] = creationDate.toEpochSecond(ZoneOffset.UTC);
+            creationNanos[row] = creationDate.getNano();
+        }
+        salaries[row] = worker.getSalary() == null ? NULL_INT : worker.getSalary();
+        startDays[row] = worker.getStartDate() == null ? NULL_INT : (int) worker.getStartDate().toEpochDay();
+        endDays[row] = worker.getEndDate() == null ? NULL_INT : (int) WorkerIndex.endDay(worker.getEndDate());
+        statuses[row] = worker.getStatus() == null ? NULL_ORDINAL : (byte) worker.getStatus().ordinal();
+        Coordinates coordinates = worker.getCoordinates();
+        if (coordinates != null) {
+            f |= HAS_COORDINATES;
+            xs[row] = coordinates.getX();
+            ys[row] = coordinates.getY() == null ? NULL_INT : coordinates.getY();
+        }
+        Person person = worker.getPerson();
+        if (person != null) {
+            f |= HAS_PERSON;
+            heights[row] = person.getHeight();
+            weights[row] = person.getWeight() == null ? NULL_INT : person.getWeight();
+            colors[row] = person.getHairColor() == null ? NULL_ORDINAL : (byte) person.getHairColor().ordinal();
+        }
+        flags[row] = f;
+        users[row] = worker.getUser();
+        userIds[row] = worker.getUserId();
+    }
+
+    private Worker materialize(int row) {
+        byte f = flags[row];
+        Coordinates coordinates = (f & HAS_COORDINATES) == 0 ? null
+                : new Coordinates(xs[row], ys[row] == NULL_INT ? null : ys[row]);
+        Person person = (f & HAS_PERSON) == 0 ? null
+                : new Person(heights[row], weights[row] == NULL_INT ? null : weights[row],
+                colors[row] == NULL_ORDINAL ? null : Color.values()[colors[row]]);
+        return Worker.restore(
+                ids[row],
+                names[row],
+                coordinates,
+                (f & HAS_CREATION_DATE) == 0 ? null
+                        : LocalDateTime.ofEpochSecond(creationSeconds[row], creationNanos[row], ZoneOffset.UTC),
+                salaries[row] == NULL_INT ? null : salaries[row],
+                startDays[row] == NULL_INT ? null : LocalDate.ofEpochDay(startDays[row]),
+                endDays[row] == NULL_INT ? null : endDate(endDays[row]),
+                statuses[row] == NULL_ORDINAL ? null : Status.values()[statuses[row]],
+                person,
+                users[row]
+        );
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        names[to] = names[from];
+        flags[to] = flags[from];
+        creationSeconds[to] = creationSeconds[from];
+        creationNanos[to] = creationNanos[from];
+        salaries[to] = salaries[from];
+        startDays[to] = startDays[from];
+        endDays[to] = endDays[from];
+        statuses[to] = statuses[from];
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        heights[to] = heights[from];
+        weights[to] = weights[from];
+        colors[to] = colors[from];
+        users[to] = users[from];
+        userIds[to] = userIds[from];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        creationSeconds = Arrays.copyOf(creationSeconds, capacity);
+        creationNanos = Arrays.copyOf(creationNanos, capacity);
+        salaries = Arrays.copyOf(salaries, capacity);
+        startDays = Arrays.copyOf(startDays, capacity);
+        endDays = Arrays.copyOf(endDays, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        users = Arrays.copyOf(users, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+    }
+}
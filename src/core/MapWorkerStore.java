@@ -0,0 +1,50 @@
+package core;
+
+import core.interfaces.InterfaceWorkerStore;
+import model.Worker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code MapWorkerStore} Хранилище по умолчанию: готовые объекты {@link Worker} в таблице по id
+ */
+public class MapWorkerStore implements InterfaceWorkerStore {
+
+    private final ConcurrentHashMap<Long, Worker> workers;
+
+    public MapWorkerStore(ConcurrentHashMap<Long, Worker> workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public Worker get(long id) {
+        return workers.get(id);
+    }
+
+    @Override
+    public Worker put(Worker worker) {
+        return workers.put(worker.getId(), worker);
+    }
+
+    @Override
+    public Worker remove(long id) {
+        return workers.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return workers.size();
+    }
+
+    @Override
+    public ConcurrentHashMap<Long, Worker> toMap() {
+        return workers;
+    }
+
+    @Override
+    public List<Worker> values() {
+        return new ArrayList<>(workers.values());
+    }
+}
@@ -0,0 +1,211 @@
+package core;
+
+import model.MessageCodec;
+import model.Worker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code SnapshotStore} Локальные снимки коллекции в двоичном формате {@link MessageCodec}.
+ *
+ * <p>Файл {@code snapshot-<отметка>.bin}: заголовок (метка, версия формата, версия кодека, отметка журнала
+ * изменений, число элементов) и элементы подряд. Файл пишется во временный и атомарно переименовывается,
+ * читается через отображение в память. Хранятся {@code retain} последних снимков.
+ */
+public class SnapshotStore {
+
+    static final Logger LOG = LoggerFactory.getLogger(SnapshotStore.class);
+    static final int MAGIC = 0x57534e50;
+    static final byte FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 4 + 1 + 1 + 8 + 4;
+    static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    static final String PREFIX = "snapshot-";
+    static final String SUFFIX = ".bin";
+
+    private final Path dir;
+    private final int retain;
+
+    public SnapshotStore(Path dir, int retain) {
+        this.dir = dir;
+        this.retain = Math.max(1, retain);
+    }
+
+    /**
+     * {@code Snapshot} Прочитанный снимок: элементы и отметка журнала, по которую они актуальны
+     */
+    public static class Snapshot {
+        private final long watermark;
+        private final ConcurrentHashMap<Long, Worker> workers;
+
+        Snapshot(long watermark, ConcurrentHashMap<Long, Worker> workers) {
+            this.watermark = watermark;
+            this.workers = workers;
+        }
+
+        public long getWatermark() {
+            return watermark;
+        }
+
+        public ConcurrentHashMap<Long, Worker> getWorkers() {
+            return workers;
+        }
+    }
+
+    /**
+     * Записывает снимок и удаляет лишние старые.
+     *
+     * @return наименьшая отметка среди оставшихся снимков (журнал до неё включительно больше не нужен)
+     * или -1, если записать не удалось
+     */
+    public long write(long watermark, Collection<Worker> workers) {
+        Path target = dir.resolve(fileName(watermark));
+        Path tmp = dir.resolve(fileName(watermark) + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+                buffer.putInt(MAGIC);
+                buffer.put(FORMAT_VERSION);
+                buffer.put(MessageCodec.VERSION);
+                buffer.putLong(watermark);
+                buffer.putInt(workers.size());
+                for (Worker worker : workers) {
+                    buffer.mark();
+                    try {
+                        MessageCodec.writeWorker(worker, false, buffer);
+                    } catch (BufferOverflowException e) {
+                        buffer.reset();
+                        flush(buffer, out);
+                        MessageCodec.writeWorker(worker, false, buffer);
+                    }
+                }
+                flush(buffer, out);
+                out.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug(String.format("snapshot %d: %s", watermark, e.getMessage()));
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException exception) {
+                LOG.debug(exception.getMessage());
+            }
+            return -1;
+        }
+        List<Path> files = list();
+        for (int i = retain; i < files.size(); i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                LOG.debug(e.getMessage());
+            }
+        }
+        if (files.isEmpty()) {
+            return -1;
+        }
+        return watermarkOf(files.get(Math.min(retain, files.size()) - 1));
+    }
+
+    /**
+     * Самый новый читаемый снимок; повреждённые и несовместимые пропускаются
+     *
+     * @return снимок или {@code null}, если подходящего нет
+     */
+    public Snapshot readLatest() {
+        for (Path file : list()) {
+            Snapshot snapshot = read(file);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Удаляет все снимки
+     */
+    public void clear() {
+        for (Path file : list()) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.debug(e.getMessage());
+            }
+        }
+    }
+
+    private Snapshot read(Path file) {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC
+                    || buffer.get() != FORMAT_VERSION || buffer.get() != MessageCodec.VERSION) {
+                LOG.debug(String.format("snapshot %s: unsupported format", file));
+                return null;
+            }
+            long watermark = buffer.getLong();
+            int count = buffer.getInt();
+            ConcurrentHashMap<Long, Worker> workers = new ConcurrentHashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                Worker worker = MessageCodec.readWorker(buffer);
+                workers.put(worker.getId(), worker);
+            }
+            return new Snapshot(watermark, workers);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug(String.format("snapshot %s: %s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Файлы снимков от нового к старому
+     */
+    private List<Path> list() {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            LOG.debug(e.getMessage());
+        }
+        files.sort(Collections.reverseOrder());
+        return files;
+    }
+
+    private static String fileName(long watermark) {
+        return String.format("%s%020d%s", PREFIX, watermark, SUFFIX);
+    }
+
+    private static long watermarkOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,67 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code StripedLocks} Фиксированный набор блокировок, выбираемых по ключу (id пользователя или элемента)
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param stripes число полос, округляется вверх до степени двойки; {@code 1} - одна общая блокировка
+     */
+    public StripedLocks(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock get(long key) {
+        return locks[stripe(key)];
+    }
+
+    /**
+     * Блокировки для нескольких ключей без повторов, в порядке номеров полос: при захвате
+     * в этом порядке потоки не могут взаимно заблокироваться, в том числе с {@link #lockAll()}
+     */
+    public List<ReentrantLock> getAll(Collection<Long> keys) {
+        BitSet stripes = new BitSet(locks.length);
+        for (Long key : keys) {
+            stripes.set(stripe(key));
+        }
+        List<ReentrantLock> result = new ArrayList<>(stripes.cardinality());
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            result.add(locks[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Захватывает все полосы по порядку; после возврата ни одно изменение под этими блокировками не выполняется
+     */
+    public void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private int stripe(long key) {
+        int h = Long.hashCode(key);
+        h ^= (h >>> 16);
+        return h & (locks.length - 1);
+    }
+}
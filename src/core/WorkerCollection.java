@@ -1,12 +1,13 @@
 package core;
 
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.StaxDriver;
 import core.interfaces.InterfaceWorkerCollection;
+import core.interfaces.InterfaceWorkerFilter;
+import core.interfaces.InterfaceWorkerStore;
 import db.DBUserUtils;
 import model.Color;
 import model.Message;
 import model.Status;
+import model.User;
 import model.Worker;
 
 
@@ -15,8 +16,16 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
+import db.DBIdAllocator;
+import db.DBLookupCache;
+import db.DBUserRegistry;
 import db.DBWorkerUtils;
+import db.interfaces.InterfaceWorkerDB;
 import org.slf4j.*;
 
 /**
@@ -26,30 +35,124 @@ import org.slf4j.*;
 public class WorkerCollection implements InterfaceWorkerCollection, Serializable {
 
     static final Logger LOG = LoggerFactory.getLogger(WorkerCollection.class);
-    private  ConcurrentHashMap<Long, Worker> workers = new ConcurrentHashMap<>();
+    /** хранилище по умолчанию: {@code server.store=map} или {@code columnar} */
+    static final boolean COLUMNAR = "columnar".equalsIgnoreCase(System.getProperty("server.store", "map"));
+    private volatile transient InterfaceWorkerStore workers;
     private LocalDateTime initData;
+    static final int LOCK_STRIPES = 64;
+    private final transient StripedLocks userLocks;
+    private final transient boolean columnar;
+    private final AtomicLong version = new AtomicLong();
+    private final transient Object indexLock = new Object();
+    /** вторичные индексы; в колоночном режиме {@code null}, выборки выполняет само хранилище */
+    private volatile transient WorkerIndex index;
+    private volatile transient InterfaceWorkerFilter filter;
+    private final transient InterfaceWorkerDB db;
+    private final transient Supplier<Long> idAllocator;
+    private final transient LongFunction<User> owners;
 
 
     public WorkerCollection() {
+        this(new DBWorkerUtils(), new DBIdAllocator()::next,
+                DBUserRegistry::get);
+    }
+
+    public WorkerCollection(InterfaceWorkerDB db, Supplier<Long> idAllocator, LongFunction<User> owners) {
+        this(db, idAllocator, owners, LOCK_STRIPES, COLUMNAR);
+    }
+
+    /**
+     * @param db          операции с БД; изменения попадают в память только после их успеха
+     * @param idAllocator источник id новых элементов; {@code null} означает, что id получить не удалось
+     * @param owners      общий экземпляр пользователя без пароля по его id
+     * @param lockStripes число полос блокировок изменений по пользователям; {@code 1} - одна общая блокировка
+     * @param columnar    {@link ColumnarWorkerStore} вместо {@link MapWorkerStore} и {@link WorkerIndex}
+     */
+    public WorkerCollection(InterfaceWorkerDB db, Supplier<Long> idAllocator, LongFunction<User> owners,
+                            int lockStripes, boolean columnar) {
+        this.db = db;
+        this.userLocks = new StripedLocks(lockStripes);
+        this.columnar = columnar;
+        this.idAllocator = idAllocator;
+        this.owners = owners;
         this.initData = LocalDateTime.now();
+        install(new ConcurrentHashMap<>());
     }
 
     /**
-     * Создаёт новый элемент коллекции
+     * Создаёт новый элемент коллекции; id назначается сервером
      */
     @Override
     public void insert(Worker worker) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        if (dbUtils.insertWorker(worker)) {
-            workers.put(worker.getId(), worker);
+        Long id = idAllocator.get();
+        if (id == null) {
+            LOG.debug("insert: id block is not available");
+            return;
+        }
+        worker.setId(id);
+        Lock lock = userLocks.get(worker.getUserId());
+        lock.lock();
+        try {
+            if (db.insertWorker(worker)) {
+                put(worker);
+                version.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пакетная вставка; в память попадают только элементы, подтверждённые БД после фиксации транзакции
+     */
+    @Override
+    public boolean[] insertBatch(List<Worker> batch) {
+        Set<Long> userIds = new HashSet<>();
+        for (Worker worker : batch) {
+            Long id = idAllocator.get();
+            if (id == null) {
+                LOG.debug("insertBatch: id block is not available");
+                return new boolean[batch.size()];
+            }
+            worker.setId(id);
+            userIds.add(worker.getUserId());
+        }
+        List<? extends Lock> locks = userLocks.getAll(userIds);
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        try {
+            boolean[] results = db.insertWorkers(batch);
+            boolean changed = false;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i]) {
+                    Worker worker = batch.get(i);
+                    put(worker);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                version.incrementAndGet();
+            }
+            return results;
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
         }
     }
 
     @Override
     public void update(Worker worker) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        if (dbUtils.updateWorker(worker)) {
-            this.load();
+        Lock lock = userLocks.get(worker.getUserId());
+        lock.lock();
+        try {
+            if (db.updateWorker(worker)) {
+                put(worker);
+                version.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -58,9 +161,15 @@ public class WorkerCollection implements InterfaceWorkerCollection, Serializable
      */
     @Override
     public void removeKey(long id, long currentUserId) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        if(dbUtils.deleteWorkerById(id, currentUserId)) {
-            this.load();
+        Lock lock = userLocks.get(currentUserId);
+        lock.lock();
+        try {
+            if (!filter.owns(currentUserId, id)) {
+                return;
+            }
+            removeIds(db.deleteWorkerById(id, currentUserId));
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -70,9 +179,15 @@ public class WorkerCollection implements InterfaceWorkerCollection, Serializable
      */
     @Override
     public void clear(long currentUserId) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        if (dbUtils.deleteWorker(currentUserId)) {
-            this.load();
+        Lock lock = userLocks.get(currentUserId);
+        lock.lock();
+        try {
+            if (!filter.ownsAny(currentUserId)) {
+                return;
+            }
+            removeIds(db.deleteWorker(currentUserId));
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -81,17 +196,16 @@ public class WorkerCollection implements InterfaceWorkerCollection, Serializable
      */
     @Override
     public void removeGreater(int salary, long currentUserId) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        Iterator<Map.Entry<Long, Worker>> workerIterator = workers.entrySet().iterator();
-        while (workerIterator.hasNext()) {
-            Map.Entry<Long, Worker> entry = workerIterator.next();
-            Worker w = entry.getValue();
-            int curSalary = w.getSalary();
-            if (curSalary > salary) {
-                dbUtils.deleteWorkerByGreaterSalary(salary, currentUserId);
+        Lock lock = userLocks.get(currentUserId);
+        lock.lock();
+        try {
+            if (!filter.ownsSalaryGreater(currentUserId, salary)) {
+                return;
             }
+            removeIds(db.deleteWorkerByGreaterSalary(salary, currentUserId));
+        } finally {
+            lock.unlock();
         }
-        this.load();
     }
 
 
@@ -100,17 +214,16 @@ public class WorkerCollection implements InterfaceWorkerCollection, Serializable
      */
     @Override
     public void removeLower(int salary, long currentUserId) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        Iterator<Map.Entry<Long, Worker>> workerIterator = workers.entrySet().iterator();
-        while (workerIterator.hasNext()) {
-            Map.Entry<Long, Worker> entry = workerIterator.next();
-            Worker w = entry.getValue();
-            int curSalary = w.getSalary();
-            if (curSalary < salary) {
-                dbUtils.deleteWorkerByLowerSalary(salary, currentUserId);
+        Lock lock = userLocks.get(currentUserId);
+        lock.lock();
+        try {
+            if (!filter.ownsSalaryLower(currentUserId, salary)) {
+                return;
             }
+            removeIds(db.deleteWorkerByLowerSalary(salary, currentUserId));
+        } finally {
+            lock.unlock();
         }
-        this.load();
     }
 
     /**
@@ -118,20 +231,18 @@ public class WorkerCollection implements InterfaceWorkerCollection, Serializable
      */
     @Override
     public void removeAllByEndDate(Date endDate, long currentUserId) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
         if (endDate == null)
             throw new IllegalArgumentException("Поле endDate не может быть пустым!");
-        Iterator<Map.Entry<Long, Worker>> workerIterator = workers.entrySet().iterator();
-        while (workerIterator.hasNext()) {
-            Map.Entry<Long, Worker> entry = workerIterator.next();
-            Worker w = entry.getValue();
-            Date curEndDate = w.getEndDate();
-            final long difference = curEndDate.getTime() - endDate.getTime();
-            if (difference > -1000 && difference < 1000) {
-                dbUtils.deleteWorkerByEndDate(endDate, currentUserId);
+        Lock lock = userLocks.get(currentUserId);
+        lock.lock();
+        try {
+            if (!filter.ownsEndDate(currentUserId, endDate)) {
+                return;
             }
+            removeIds(db.deleteWorkerByEndDate(endDate, currentUserId));
+        } finally {
+            lock.unlock();
         }
-        this.load();
     }
 
     /**
@@ -139,38 +250,221 @@ public class WorkerCollection implements InterfaceWorkerCollection, Serializable
      */
     @Override
     public void removeAnyByStartDate(LocalDate startDate, long currentUserId) {
-        DBWorkerUtils dbUtils = new DBWorkerUtils();
-        Iterator<Map.Entry<Long, Worker>> workerIterator = workers.entrySet().iterator();
-        while (workerIterator.hasNext()) {
-            Map.Entry<Long, Worker> entry = workerIterator.next();
-            Worker w = entry.getValue();
-            LocalDate curStartDate = w.getStartDate();
-            if (curStartDate.isEqual(startDate)) {
-                dbUtils.deleteWorkerByStartDate(startDate, currentUserId);
+        Lock lock = userLocks.get(currentUserId);
+        lock.lock();
+        try {
+            if (!filter.ownsStartDate(currentUserId, startDate)) {
+                return;
+            }
+            removeIds(db.deleteWorkerByStartDate(startDate, currentUserId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Убирает из памяти элементы, удаление которых подтвердила БД
+     */
+    private void removeIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        synchronized (indexLock) {
+            for (Long id : ids) {
+                Worker removed = workers.remove(id);
+                if (removed != null && index != null) {
+                    index.remove(removed);
+                }
             }
         }
-        this.load();
+        version.incrementAndGet();
+    }
 
+    /**
+     * Добавляет или заменяет элемент в памяти вместе с его записями во вторичных индексах.
+     * Пользователь из запроса заменяется общим экземпляром реестра без пароля
+     */
+    private void put(Worker worker) {
+        worker.setUser(owners.apply(worker.getUserId()));
+        synchronized (indexLock) {
+            Worker previous = workers.put(worker);
+            if (index != null) {
+                if (previous != null) {
+                    index.remove(previous);
+                }
+                index.add(worker);
+            }
+        }
     }
 
+    /**
+     * Все элементы для ответа клиенту; в колоночном режиме объекты собираются при каждом вызове
+     */
     public ConcurrentHashMap<Long, Worker> getWorkers() {
-        return workers;
+        return workers.toMap();
+    }
+
+    public int size() {
+        return workers.size();
+    }
+
+    /**
+     * Выборки по зарплате, датам и владельцу: {@link WorkerIndex} за O(log n + k) в режиме {@code map},
+     * проход по столбцам в режиме {@code columnar}
+     */
+    public InterfaceWorkerFilter getFilter() {
+        return filter;
     }
 
     public LocalDateTime getInitData() {
         return initData;
     }
 
-    public synchronized void load() {
-        DBWorkerUtils dbWorkerUtils = new DBWorkerUtils();
-        this.workers.clear();
-        this.workers = dbWorkerUtils.getWorkers();
+    /**
+     * Монотонно растущая версия коллекции; увеличивается при каждом изменении
+     */
+    public long getVersion() {
+        return version.get();
     }
-}
 
+    /**
+     * Перечитывает коллекцию из БД и атомарно подменяет её, не блокируя читателей.
+     * Изменения применяются к памяти по месту, полная перезагрузка нужна только при старте
+     * и для ручного восстановления согласованности. Чтение и подмена идут под всеми блокировками
+     * пользователей: изменение, зафиксированное в БД между ними, иначе попало бы в старую коллекцию
+     * и пропало при подмене
+     *
+     * @return {@code false}, если прочитать коллекцию не удалось; текущая коллекция тогда не меняется
+     */
+    public synchronized boolean load() {
+        DBLookupCache.reload();
+        DBUserRegistry.reload();
+        userLocks.lockAll();
+        try {
+            return loadLocked();
+        } finally {
+            userLocks.unlockAll();
+        }
+    }
 
+    private boolean loadLocked() {
+        ConcurrentHashMap<Long, Worker> loaded = db.getWorkers();
+        if (loaded == null) {
+            LOG.info("Collection not loaded from db, keeping the current one");
+            return false;
+        }
+        replace(loaded);
+        return true;
+    }
 
+    /**
+     * Тёплый старт: коллекция читается из последнего локального снимка, а из БД перечитываются
+     * только элементы, изменённые после его отметки в журнале {@code worker_change_log}.
+     * Если снимка нет или он не сходится с БД, выполняется полная загрузка {@link #load()}.
+     * Как и в {@link #load()}, чтение из БД и подмена идут под всеми блокировками пользователей
+     */
+    public synchronized void warmStart(SnapshotStore store) {
+        SnapshotStore.Snapshot snapshot = store.readLatest();
+        if (snapshot == null) {
+            load();
+            return;
+        }
+        DBLookupCache.reload();
+        DBUserRegistry.reload();
+        ConcurrentHashMap<Long, Worker> loaded = snapshot.getWorkers();
+        for (Worker worker : loaded.values()) {
+            worker.setUser(owners.apply(worker.getUserId()));
+        }
+        userLocks.lockAll();
+        try {
+            Set<Long> changed = db.getChangedIds(snapshot.getWatermark());
+            if (changed == null) {
+                loadLocked();
+                return;
+            }
+            loaded.keySet().removeAll(changed);
+            if (!changed.isEmpty()) {
+                ConcurrentHashMap<Long, Worker> reloaded = db.getWorkersByIds(changed);
+                if (reloaded == null) {
+                    loadLocked();
+                    return;
+                }
+                loaded.putAll(reloaded);
+            }
+            long count = db.countWorkers();
+            if (count != loaded.size()) {
+                LOG.info(String.format("Snapshot %d is stale (%d workers in memory, %d in db), doing full load",
+                        snapshot.getWatermark(), loaded.size(), count));
+                loadLocked();
+                return;
+            }
+            replace(loaded);
+            LOG.info(String.format("Warm start from snapshot %d: %d workers, %d reloaded from db",
+                    snapshot.getWatermark(), loaded.size(), changed.size()));
+        } finally {
+            userLocks.unlockAll();
+        }
+    }
 
+    /**
+     * Записывает снимок коллекции. Отметка журнала и копия элементов берутся под всеми блокировками
+     * пользователей, поэтому снимок содержит ровно изменения с номерами не больше отметки;
+     * запись на диск идёт уже без блокировок
+     */
+    public boolean snapshot(SnapshotStore store) {
+        long watermark;
+        List<Worker> copy;
+        userLocks.lockAll();
+        try {
+            watermark = db.getChangeWatermark();
+            copy = workers.values();
+        } finally {
+            userLocks.unlockAll();
+        }
+        if (watermark < 0) {
+            return false;
+        }
+        long retained = store.write(watermark, copy);
+        if (retained < 0) {
+            return false;
+        }
+        db.pruneChangeLog(retained);
+        return true;
+    }
 
+    /**
+     * Очищает журнал изменений целиком; используется, когда снимки выключены и журнал никому не нужен
+     */
+    public void pruneChangeLog() {
+        long watermark = db.getChangeWatermark();
+        if (watermark > 0) {
+            db.pruneChangeLog(watermark);
+        }
+    }
+
+    private void replace(ConcurrentHashMap<Long, Worker> loaded) {
+        install(loaded);
+        version.incrementAndGet();
+    }
 
+    private void install(ConcurrentHashMap<Long, Worker> loaded) {
+        InterfaceWorkerStore loadedStore = newStore(loaded);
+        WorkerIndex loadedIndex = columnar ? null : WorkerIndex.of(loaded);
+        synchronized (indexLock) {
+            this.workers = loadedStore;
+            this.index = loadedIndex;
+            this.filter = columnar ? (ColumnarWorkerStore) loadedStore : loadedIndex;
+        }
+    }
 
+    private InterfaceWorkerStore newStore(ConcurrentHashMap<Long, Worker> loaded) {
+        if (!columnar) {
+            return new MapWorkerStore(loaded);
+        }
+        ColumnarWorkerStore store = new ColumnarWorkerStore(loaded.size());
+        for (Worker worker : loaded.values()) {
+            store.put(worker);
+        }
+        return store;
+    }
+}
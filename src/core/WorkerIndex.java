@@ -0,0 +1,209 @@
+package core;
+
+import core.interfaces.InterfaceWorkerFilter;
+import model.Worker;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * {@code WorkerIndex} Вторичные индексы коллекции: по зарплате, по дням startDate и endDate и по владельцу.
+ * Используется с хранилищем {@link MapWorkerStore}; колоночное хранилище отвечает на те же выборки
+ * проходом по своим массивам.
+ *
+ * <p>Чтение без блокировок; изменения выполняет {@link WorkerCollection} под своей блокировкой индекса
+ * вместе с изменением основной таблицы, поэтому индексы всегда соответствуют ей.
+ */
+public class WorkerIndex implements InterfaceWorkerFilter {
+
+    private final ConcurrentSkipListMap<Integer, Set<Long>> bySalary = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Set<Long>> byStartDay = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Set<Long>> byEndDay = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> byUser = new ConcurrentHashMap<>();
+
+    public static WorkerIndex of(Map<Long, Worker> workers) {
+        WorkerIndex index = new WorkerIndex();
+        for (Worker worker : workers.values()) {
+            index.add(worker);
+        }
+        return index;
+    }
+
+    /**
+     * День {@code endDate} в часовом поясе сервера, так же как он сохраняется в БД
+     */
+    public static long endDay(Date endDate) {
+        return Instant.ofEpochMilli(endDate.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    void add(Worker worker) {
+        long id = worker.getId();
+        if (worker.getSalary() != null) {
+            bySalary.computeIfAbsent(worker.getSalary(), k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        if (worker.getStartDate() != null) {
+            byStartDay.computeIfAbsent(worker.getStartDate().toEpochDay(), k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        if (worker.getEndDate() != null) {
+            byEndDay.computeIfAbsent(endDay(worker.getEndDate()), k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        byUser.computeIfAbsent(worker.getUserId(), k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    void remove(Worker worker) {
+        long id = worker.getId();
+        if (worker.getSalary() != null) {
+            removeFrom(bySalary, worker.getSalary(), id);
+        }
+        if (worker.getStartDate() != null) {
+            removeFrom(byStartDay, worker.getStartDate().toEpochDay(), id);
+        }
+        if (worker.getEndDate() != null) {
+            removeFrom(byEndDay, endDay(worker.getEndDate()), id);
+        }
+        removeFrom(byUser, worker.getUserId(), id);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Long>> index, K key, long id) {
+        Set<Long> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public List<Long> salaryGreater(int salary) {
+        return flatten(bySalary.tailMap(salary, false));
+    }
+
+    @Override
+    public List<Long> salaryLower(int salary) {
+        return flatten(bySalary.headMap(salary, false));
+    }
+
+    public List<Long> byStartDate(LocalDate startDate) {
+        return copy(byStartDay.get(startDate.toEpochDay()));
+    }
+
+    public List<Long> byEndDate(Date endDate) {
+        return copy(byEndDay.get(endDay(endDate)));
+    }
+
+    /**
+     * Значения идут в порядке индекса, без сортировки на каждый запрос
+     */
+    @Override
+    public int[] endDaysDescending(int offset, int limit) {
+        int capacity = limit < 0 ? 16 : Math.min(limit, 1 << 16);
+        int[] days = new int[Math.max(capacity, 1)];
+        int size = 0;
+        int skip = Math.max(0, offset);
+        for (Map.Entry<Long, Set<Long>> entry : byEndDay.descendingMap().entrySet()) {
+            int count = entry.getValue().size();
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            count -= skip;
+            skip = 0;
+            for (int i = 0; i < count; i++) {
+                if (limit >= 0 && size >= limit) {
+                    return Arrays.copyOf(days, size);
+                }
+                if (size == days.length) {
+                    days = Arrays.copyOf(days, days.length * 2);
+                }
+                days[size++] = (int) (long) entry.getKey();
+            }
+        }
+        return Arrays.copyOf(days, size);
+    }
+
+    public Set<Long> byUser(long userId) {
+        Set<Long> ids = byUser.get(userId);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    @Override
+    public boolean owns(long userId, long id) {
+        Set<Long> ids = byUser.get(userId);
+        return ids != null && ids.contains(id);
+    }
+
+    @Override
+    public boolean ownsAny(long userId) {
+        Set<Long> ids = byUser.get(userId);
+        return ids != null && !ids.isEmpty();
+    }
+
+    @Override
+    public boolean ownsSalaryGreater(long userId, int salary) {
+        return ownsIn(userId, bySalary.tailMap(salary, false).values());
+    }
+
+    @Override
+    public boolean ownsSalaryLower(long userId, int salary) {
+        return ownsIn(userId, bySalary.headMap(salary, false).values());
+    }
+
+    @Override
+    public boolean ownsStartDate(long userId, LocalDate startDate) {
+        Set<Long> bucket = byStartDay.get(startDate.toEpochDay());
+        return bucket != null && ownsIn(userId, Collections.singletonList(bucket));
+    }
+
+    @Override
+    public boolean ownsEndDate(long userId, Date endDate) {
+        Set<Long> bucket = byEndDay.get(endDay(endDate));
+        return bucket != null && ownsIn(userId, Collections.singletonList(bucket));
+    }
+
+    /**
+     * Есть ли в корзинах индекса элементы пользователя. Список совпадений не строится: проверка
+     * останавливается на первом найденном элементе, а в каждой корзине перебирается меньшее из
+     * двух множеств — корзина или элементы пользователя
+     */
+    private boolean ownsIn(long userId, Collection<Set<Long>> buckets) {
+        Set<Long> owned = byUser.get(userId);
+        if (owned == null || owned.isEmpty()) {
+            return false;
+        }
+        for (Set<Long> bucket : buckets) {
+            Set<Long> small = bucket.size() <= owned.size() ? bucket : owned;
+            Set<Long> large = small == bucket ? owned : bucket;
+            for (Long id : small) {
+                if (large.contains(id)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Long> flatten(NavigableMap<?, Set<Long>> range) {
+        List<Long> ids = new ArrayList<>();
+        for (Set<Long> bucket : range.values()) {
+            ids.addAll(bucket);
+        }
+        return ids;
+    }
+
+    private static List<Long> copy(Set<Long> ids) {
+        return ids == null ? Collections.emptyList() : new ArrayList<>(ids);
+    }
+}
@@ -4,10 +4,12 @@ import model.Worker;
 
 import java.time.LocalDate;
 import java.util.Date;
+import java.util.List;
 
 public interface InterfaceWorkerCollection {
 
     void insert(Worker worker);
+    boolean[] insertBatch(List<Worker> batch);
     void update(Worker worker);
     void removeKey(long id, long currentUserId);
     void clear(long currentUserId);
@@ -0,0 +1,44 @@
+package core.interfaces;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@code InterfaceWorkerFilter} Выборки по зарплате, датам и владельцу, по которым команды решают,
+ * нужно ли обращаться к БД. Даты сравниваются по дням; день {@code endDate} берётся в часовом поясе
+ * сервера, так же как он сохраняется в БД
+ */
+public interface InterfaceWorkerFilter {
+
+    boolean owns(long userId, long id);
+    /**
+     * Есть ли у пользователя хотя бы один элемент
+     */
+    boolean ownsAny(long userId);
+    /**
+     * Есть ли у пользователя элементы с зарплатой строго больше {@code salary}
+     */
+    boolean ownsSalaryGreater(long userId, int salary);
+    /**
+     * Есть ли у пользователя элементы с зарплатой строго меньше {@code salary}
+     */
+    boolean ownsSalaryLower(long userId, int salary);
+    boolean ownsStartDate(long userId, LocalDate startDate);
+    boolean ownsEndDate(long userId, Date endDate);
+    /**
+     * id элементов с зарплатой строго больше {@code salary}
+     */
+    List<Long> salaryGreater(int salary);
+    /**
+     * id элементов с зарплатой строго меньше {@code salary}
+     */
+    List<Long> salaryLower(int salary);
+    /**
+     * Значения endDate (дни от 1970-01-01) по убыванию
+     *
+     * @param offset сколько значений пропустить
+     * @param limit  максимальное число значений; отрицательное значение - без ограничения
+     */
+    int[] endDaysDescending(int offset, int limit);
+}
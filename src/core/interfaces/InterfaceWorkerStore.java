@@ -0,0 +1,29 @@
+package core.interfaces;
+
+import model.Worker;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code InterfaceWorkerStore} Хранилище элементов коллекции в памяти; изменения выполняет
+ * {@link core.WorkerCollection} под своей блокировкой, чтение возможно из любых потоков
+ */
+public interface InterfaceWorkerStore {
+
+    Worker get(long id);
+    /**
+     * @return прежний элемент с тем же id или {@code null}
+     */
+    Worker put(Worker worker);
+    Worker remove(long id);
+    int size();
+    /**
+     * Все элементы в виде таблицы для ответа клиенту; результат может быть живым представлением хранилища
+     */
+    ConcurrentHashMap<Long, Worker> toMap();
+    /**
+     * Копия всех элементов
+     */
+    List<Worker> values();
+}
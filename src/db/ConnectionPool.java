@@ -0,0 +1,362 @@
+package db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * {@code ConnectionPool} Пул соединений с БД: минимальный и максимальный размер, проверка соединения
+ * перед выдачей, ограничение времени ожидания и поиск соединений, которые не были возвращены.
+ * Если соединения закрываются после неудачной проверки, пул раз в {@code validationIntervalMillis}
+ * открывает новые, пока их снова не станет {@code minSize}.
+ *
+ * <p>Выдаётся прокси; {@code close()} на нём возвращает соединение в пул, а не закрывает его.
+ *
+ * <p>Время работы потока с БД — от запроса соединения до возврата последнего взятого им соединения,
+ * включая ожидание свободного — передаётся слушателю {@link #setUsageListener(LongConsumer)} в том же
+ * потоке; вложенные соединения одного потока не считаются дважды.
+ */
+public class ConnectionPool {
+
+    static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long checkoutTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final long validationIntervalMillis;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> checkedOut = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private volatile boolean started;
+    private volatile LongConsumer usageListener;
+    private final ThreadLocal<Usage> usage = ThreadLocal.withInitial(Usage::new);
+
+    /** соединения, взятые потоком, и начало их общего интервала */
+    private static final class Usage {
+        int held;
+        long since;
+    }
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long checkoutTimeoutMillis, long leakThresholdMillis, long validationIntervalMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * @param listener получает наносекунды работы текущего потока с БД; {@code null} отключает учёт
+     */
+    public void setUsageListener(LongConsumer listener) {
+        this.usageListener = listener;
+    }
+
+    /**
+     * Выдаёт соединение из пула, ожидая не дольше {@code checkoutTimeoutMillis}
+     */
+    public Connection getConnection() throws SQLException {
+        if (!started) {
+            start();
+        }
+        long begin = System.nanoTime();
+        Usage held = usage.get();
+        if (held.held++ == 0) {
+            held.since = begin;
+        }
+        try {
+            if (!permits.tryAcquire(checkoutTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                endUsage(held);
+                throw new SQLTimeoutException(String.format(
+                        "Нет свободных соединений за %d мс (%s)", checkoutTimeoutMillis, this));
+            }
+        } catch (InterruptedException e) {
+            endUsage(held);
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        try {
+            PooledConnection pooled = takeValid();
+            long waited = System.nanoTime() - begin;
+            waitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            checkouts.incrementAndGet();
+            pooled.checkOut(held);
+            checkedOut.add(pooled);
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            endUsage(held);
+            throw e;
+        }
+    }
+
+    /**
+     * Отмечает, что соединение потока возвращено; когда возвращено последнее, сообщает слушателю время.
+     * Если соединение вернул другой поток, время не сообщается: слушатель привязан к потоку
+     */
+    private void endUsage(Usage held) {
+        if (held.held == 0 || --held.held > 0) {
+            return;
+        }
+        LongConsumer listener = usageListener;
+        if (listener != null && held == usage.get()) {
+            listener.accept(System.nanoTime() - held.since);
+        }
+    }
+
+    private PooledConnection takeValid() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return open();
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMillis) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        raw.setAutoCommit(true);
+        total.incrementAndGet();
+        LOG.info("Соединение установлено");
+        return new PooledConnection(raw);
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!checkedOut.remove(pooled)) {
+            return;
+        }
+        try {
+            if (pooled.raw.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        fillToMin();
+        ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        long refill = Math.max(1000L, validationIntervalMillis);
+        maintenance.scheduleWithFixedDelay(this::fillToMin, refill, refill, TimeUnit.MILLISECONDS);
+        if (leakThresholdMillis > 0) {
+            maintenance.scheduleAtFixedRate(this::detectLeaks, leakThresholdMillis, leakThresholdMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Открывает соединения, пока их не станет {@code minSize}; при ошибке подключения попытка
+     * повторяется при следующем запуске
+     */
+    private void fillToMin() {
+        while (total.get() < minSize) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                LOG.debug(String.format("Ошибка при подключении к базе данных: %s", e.getMessage()));
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : checkedOut) {
+            if (!pooled.leakReported && now - pooled.checkedOutAt > leakThresholdMillis) {
+                pooled.leakReported = true;
+                leaks.incrementAndGet();
+                LOG.warn(String.format("Соединение не возвращено в пул %d мс", now - pooled.checkedOutAt),
+                        pooled.checkoutTrace);
+            }
+        }
+    }
+
+    public int getActive() {
+        return checkedOut.size();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Доля занятых соединений от максимального размера пула
+     */
+    public double getUtilization() {
+        return (double) getActive() / maxSize;
+    }
+
+    public long getCheckouts() {
+        return checkouts.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getLeaks() {
+        return leaks.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = checkouts.get();
+        return count == 0 ? 0 : waitNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "active=" + getActive() +
+                ", idle=" + getIdle() +
+                ", total=" + getTotal() + "/" + maxSize +
+                ", checkouts=" + getCheckouts() +
+                ", timeouts=" + getTimeouts() +
+                ", leaks=" + getLeaks() +
+                String.format(", avgWait=%.3fms, maxWait=%.3fms", getAverageWaitMillis(), getMaxWaitMillis()) +
+                '}';
+    }
+
+    private class PooledConnection implements InvocationHandler {
+        final Connection raw;
+        final Connection proxy;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long checkedOutAt;
+        volatile Throwable checkoutTrace;
+        volatile boolean leakReported;
+        volatile boolean open;
+        volatile Usage owner;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        void checkOut(Usage owner) {
+            this.owner = owner;
+            checkedOutAt = System.currentTimeMillis();
+            checkoutTrace = leakThresholdMillis > 0 ? new Throwable("checkout") : null;
+            leakReported = false;
+            open = true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (open) {
+                        open = false;
+                        release(this);
+                        endUsage(owner);
+                    }
+                    return null;
+                case "isClosed":
+                    return !open || raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + raw;
+                default:
+                    if (!open) {
+                        throw new SQLException("Соединение уже возвращено в пул");
+                    }
+                    try {
+                        return method.invoke(raw, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
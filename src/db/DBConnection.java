@@ -4,7 +4,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DBConnection {
@@ -12,19 +11,42 @@ public class DBConnection {
     private static final String DB_USER = "s309544";
     private static final String DB_PASSWORD = "jvd076";
     private static final String DB_URL = "jdbc:postgresql://localhost:5430/studs";
+    private static final ConnectionPool POOL = createPool();
 
-    protected Connection getDBConnection() {
-        Connection connection = null;
+    private static ConnectionPool createPool() {
         try {
             Class.forName("org.postgresql.Driver");
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            connection.setAutoCommit(true);
-            LOG.info("Соединение установлено");
         } catch (ClassNotFoundException e) {
             LOG.debug("Драйвер не найден");
+        }
+        return new ConnectionPool(
+                DB_URL,
+                DB_USER,
+                DB_PASSWORD,
+                Integer.getInteger("db.pool.min", 2),
+                Integer.getInteger("db.pool.max", 16),
+                Long.getLong("db.pool.timeout", 5000L),
+                Long.getLong("db.pool.leak", 30000L),
+                Long.getLong("db.pool.validation", 10000L)
+        );
+    }
+
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * Соединение из пула; {@code close()} возвращает его обратно в пул
+     *
+     * @throws SQLException если соединение не получено, в т.ч. {@link java.sql.SQLTimeoutException},
+     *                      когда все соединения заняты дольше {@code db.pool.timeout}
+     */
+    protected Connection getDBConnection() throws SQLException {
+        try {
+            return POOL.getConnection();
         } catch (SQLException e) {
             LOG.debug(String.format("Ошибка при подключении к базе данных: %s", e.getMessage()));
+            throw e;
         }
-        return connection;
     }
 }
@@ -0,0 +1,77 @@
+package db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * {@code DBIdAllocator} Выдача id элементов блоками из последовательности {@code worker_key_seq}:
+ * последовательность растёт на размер блока, {@code nextval} — верхняя граница (не включительно)
+ * очередного блока, а id внутри блока перебираются в памяти. Обращение к БД нужно раз на блок.
+ *
+ * <p>Размер блока — шаг последовательности, читаемый вместе с {@code nextval}, поэтому серверы с разными
+ * настройками не могут выдать пересекающиеся id.
+ */
+public class DBIdAllocator extends DBConnection {
+
+    static final Logger LOG = LoggerFactory.getLogger(DBIdAllocator.class);
+
+    static final String NEXT_BLOCK_SQL = "select nextval('worker_key_seq'), increment_by from pg_sequences" +
+            " where schemaname = current_schema() and sequencename = 'worker_key_seq'";
+
+    private long next;
+    private long end;
+
+    /**
+     * @return новый уникальный id или {@code null}, если не удалось получить блок из БД
+     */
+    public synchronized Long next() {
+        if (next >= end) {
+            if (!fetchBlock()) {
+                return null;
+            }
+        }
+        return next++;
+    }
+
+    private boolean fetchBlock() {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        boolean fetched = false;
+        try {
+            connection = getDBConnection();
+            preparedStatement = connection.prepareStatement(NEXT_BLOCK_SQL);
+            ResultSet rs = preparedStatement.executeQuery();
+            if (rs.next()) {
+                long upper = rs.getLong(1);
+                long blockSize = rs.getLong(2);
+                if (blockSize > 0) {
+                    next = upper - blockSize;
+                    end = upper;
+                    fetched = true;
+                    LOG.debug(String.format("Allocated id block [%d, %d)", next, end));
+                }
+            }
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
+        } finally {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+        return fetched;
+    }
+}
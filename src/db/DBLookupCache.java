@@ -0,0 +1,197 @@
+package db;
+
+import model.Color;
+import model.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * {@code DBLookupCache} Справочники {@code color} и {@code status}, загруженные в память один раз.
+ * id хранятся в массивах по {@code ordinal()} перечисления; перечитываются только явно через {@link #reload()}
+ * (при загрузке коллекции и командой консоли {@code reload}). Отдельной версии схемы в БД нет, поэтому
+ * после изменения справочников нужен {@code reload}. Значение, которого нет в справочнике, - ошибка:
+ * поиск бросает {@link IllegalStateException}, а не возвращает {@code null}, который попал бы в элементы.
+ */
+public class DBLookupCache extends DBConnection {
+
+    static final Logger LOG = LoggerFactory.getLogger(DBLookupCache.class);
+    private static final DBLookupCache INSTANCE = new DBLookupCache();
+    private static final int MISSING = -1;
+    /** {@code color_id}/{@code status_id}, прочитанный из пустого столбца */
+    private static final int NULL_ID = 0;
+
+    private static final class Tables {
+        final int[] colorIds = new int[Color.values().length];
+        final int[] statusIds = new int[Status.values().length];
+        Color[] colorById = new Color[0];
+        Status[] statusById = new Status[0];
+        boolean loaded;
+
+        Tables() {
+            Arrays.fill(colorIds, MISSING);
+            Arrays.fill(statusIds, MISSING);
+        }
+    }
+
+    private static volatile Tables tables = new Tables();
+
+    public static Integer getColorId(Color color) {
+        if (color == null) {
+            return null;
+        }
+        return require(loaded().colorIds[color.ordinal()], "color", color);
+    }
+
+    public static Integer getStatusId(Status status) {
+        if (status == null) {
+            return null;
+        }
+        return require(loaded().statusIds[status.ordinal()], "status", status);
+    }
+
+    /**
+     * @return цвет или {@code null} для пустого столбца
+     * @throws IllegalStateException если id нет в справочнике
+     */
+    public static Color colorOf(int id) {
+        return byId(loaded().colorById, id, "color");
+    }
+
+    /**
+     * @return статус или {@code null} для пустого столбца
+     * @throws IllegalStateException если id нет в справочнике
+     */
+    public static Status statusOf(int id) {
+        return byId(loaded().statusById, id, "status");
+    }
+
+    private static int require(int id, String table, Enum<?> value) {
+        if (id == MISSING) {
+            String message = String.format("No %s row for %s, run reload after changing the table", table, value);
+            LOG.warn(message);
+            throw new IllegalStateException(message);
+        }
+        return id;
+    }
+
+    private static <E> E byId(E[] byId, int id, String table) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        E value = id > 0 && id < byId.length ? byId[id] : null;
+        if (value == null) {
+            String message = String.format("Unknown %s id %d, run reload after changing the table", table, id);
+            LOG.warn(message);
+            throw new IllegalStateException(message);
+        }
+        return value;
+    }
+
+    /**
+     * Справочники; если они ещё не загружены (БД была недоступна при первом обращении), загружаются сейчас
+     *
+     * @throws IllegalStateException если загрузить их не удалось
+     */
+    private static Tables loaded() {
+        Tables current = tables;
+        if (current.loaded) {
+            return current;
+        }
+        synchronized (DBLookupCache.class) {
+            current = tables.loaded ? tables : load();
+        }
+        if (!current.loaded) {
+            throw new IllegalStateException("Lookup tables are not loaded");
+        }
+        return current;
+    }
+
+    /**
+     * Перечитывает оба справочника из БД
+     */
+    public static void reload() {
+        load();
+    }
+
+    private static synchronized Tables load() {
+        Tables fresh = new Tables();
+        Connection connection = null;
+        PreparedStatement colorStatement = null;
+        PreparedStatement statusStatement = null;
+        try {
+            connection = INSTANCE.getDBConnection();
+            colorStatement = connection.prepareStatement("select id, name from color");
+            ResultSet rs = colorStatement.executeQuery();
+            int maxId = 0;
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                Color color = byName(Color.values(), Color::getName, rs.getString("name"));
+                if (color != null) {
+                    fresh.colorIds[color.ordinal()] = id;
+                    maxId = Math.max(maxId, id);
+                }
+            }
+            fresh.colorById = new Color[maxId + 1];
+            for (Color color : Color.values()) {
+                if (fresh.colorIds[color.ordinal()] != MISSING) {
+                    fresh.colorById[fresh.colorIds[color.ordinal()]] = color;
+                }
+            }
+
+            statusStatement = connection.prepareStatement("select id, name from status");
+            rs = statusStatement.executeQuery();
+            maxId = 0;
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                Status status = byName(Status.values(), Status::getName, rs.getString("name"));
+                if (status != null) {
+                    fresh.statusIds[status.ordinal()] = id;
+                    maxId = Math.max(maxId, id);
+                }
+            }
+            fresh.statusById = new Status[maxId + 1];
+            for (Status status : Status.values()) {
+                if (fresh.statusIds[status.ordinal()] != MISSING) {
+                    fresh.statusById[fresh.statusIds[status.ordinal()]] = status;
+                }
+            }
+            fresh.loaded = true;
+            tables = fresh;
+            LOG.debug(String.format("Lookup tables loaded: color=%s, status=%s",
+                    Arrays.toString(fresh.colorIds), Arrays.toString(fresh.statusIds)));
+        } catch (SQLException | RuntimeException e) {
+            LOG.debug(String.format("Lookup tables not loaded: %s", e.getMessage()));
+        } finally {
+            try {
+                if (colorStatement != null) {
+                    colorStatement.close();
+                }
+                if (statusStatement != null) {
+                    statusStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+        return tables;
+    }
+
+    private static <E extends Enum<E>> E byName(E[] values, Function<E, String> getName, String name) {
+        for (E value : values) {
+            if (getName.apply(value).equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+package db;
+
+import model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code DBUserRegistry} Владельцы элементов коллекции по id, по одному общему экземпляру {@link User}
+ * на пользователя. Экземпляры реестра не содержат пароля и только ими ссылаются элементы в памяти;
+ * таблица {@code user_worker} читается целиком через {@link #reload()}, а при промахе дочитывается
+ * одна строка по id без общей блокировки. id, которого нет в БД, запоминается как отсутствующий на
+ * {@code db.user.miss.ttl} секунд или до следующего {@link #reload()}.
+ */
+public class DBUserRegistry extends DBConnection {
+
+    static final Logger LOG = LoggerFactory.getLogger(DBUserRegistry.class);
+    private static final DBUserRegistry INSTANCE = new DBUserRegistry();
+
+    private static final long MISS_TTL_MILLIS = Long.getLong("db.user.miss.ttl", 30L) * 1000L;
+    private static final int MAX_MISSES = Integer.getInteger("db.user.miss.max", 10_000);
+    /** результат {@link #find(long)}, когда строки нет в БД, в отличие от ошибки чтения */
+    private static final User NOT_FOUND = new User(null, null);
+
+    private static final ConcurrentHashMap<Long, User> users = new ConcurrentHashMap<>();
+    /** id, которых нет в БД, и время, когда их можно запросить снова */
+    private static final ConcurrentHashMap<Long, Long> missing = new ConcurrentHashMap<>();
+
+    /**
+     * Общий экземпляр пользователя; при промахе из БД читается только этот id. Если пользователя нет
+     * в БД или она недоступна, возвращается экземпляр без имени, который в реестр не попадает:
+     * id может прийти от клиента, и неизвестные id не должны копиться в памяти. Отсутствие в БД
+     * запоминается, поэтому повторные запросы того же id в БД не идут; таблица отсутствующих id
+     * ограничена {@code db.user.miss.max} и при переполнении очищается
+     */
+    public static User get(long userId) {
+        User user = users.get(userId);
+        if (user != null) {
+            return user;
+        }
+        Long retryAt = missing.get(userId);
+        if (retryAt == null || System.currentTimeMillis() >= retryAt) {
+            User found = find(userId);
+            if (found == NOT_FOUND) {
+                if (missing.size() >= MAX_MISSES) {
+                    missing.clear();
+                }
+                missing.put(userId, System.currentTimeMillis() + MISS_TTL_MILLIS);
+            } else if (found != null) {
+                missing.remove(userId);
+                User previous = users.putIfAbsent(userId, found);
+                return previous == null ? found : previous;
+            }
+        }
+        User unknown = new User(null, null);
+        unknown.setUserId(userId);
+        return unknown;
+    }
+
+    /**
+     * Запоминает пользователя, подтверждённого входом: снимает отметку об отсутствии, которая могла
+     * остаться от запроса его id до регистрации
+     */
+    public static User register(long userId, String userName) {
+        missing.remove(userId);
+        User user = users.computeIfAbsent(userId, id -> {
+            User created = new User(userName, null);
+            created.setUserId(id);
+            return created;
+        });
+        user.setUserName(userName);
+        return user;
+    }
+
+    public static int size() {
+        return users.size();
+    }
+
+    /**
+     * Перечитывает пользователей из БД; уже выданные экземпляры остаются общими
+     */
+    public static void reload() {
+        missing.clear();
+        load();
+    }
+
+    /**
+     * @return пользователь без пароля, {@link #NOT_FOUND}, если его нет в БД, или {@code null},
+     * если БД не удалось прочитать
+     */
+    private static User find(long userId) {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = INSTANCE.getDBConnection();
+            preparedStatement = connection.prepareStatement("select username from user_worker where id = ?");
+            preparedStatement.setLong(1, userId);
+            ResultSet rs = preparedStatement.executeQuery();
+            if (!rs.next()) {
+                return NOT_FOUND;
+            }
+            User user = new User(rs.getString("username"), null);
+            user.setUserId(userId);
+            return user;
+        } catch (SQLException | RuntimeException e) {
+            LOG.debug(String.format("User %d not loaded: %s", userId, e.getMessage()));
+            return null;
+        } finally {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+    }
+
+    private static synchronized void load() {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = INSTANCE.getDBConnection();
+            preparedStatement = connection.prepareStatement("select id, username from user_worker");
+            ResultSet rs = preparedStatement.executeQuery();
+            while (rs.next()) {
+                long id = rs.getLong("id");
+                String userName = rs.getString("username");
+                User user = users.computeIfAbsent(id, key -> {
+                    User created = new User(userName, null);
+                    created.setUserId(key);
+                    return created;
+                });
+                user.setUserName(userName);
+            }
+            LOG.debug(String.format("Users loaded: %d", users.size()));
+        } catch (SQLException | RuntimeException e) {
+            LOG.debug(String.format("Users not loaded: %s", e.getMessage()));
+        } finally {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+    }
+}
@@ -2,23 +2,32 @@ package db;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+
+import model.Hasher;
 import org.slf4j.*;
 
 public class DBUserUtils extends DBConnection {
 
     static final Logger LOG = LoggerFactory.getLogger(DBUserUtils.class);
 
+    /**
+     * Регистрирует пользователя; в БД сохраняется только хэш пароля с солью пользователя
+     */
     public boolean insertUser(String userName, String userPassword) {
         LOG.debug(String.format("insertUser"));
-        Connection connection = getDBConnection();
+        String passwordHash = Hasher.hash(userPassword);
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            String sql = "insert into user(username, userpassword)" +
+            connection = getDBConnection();
+            String sql = "insert into user_worker(username, userpassword)" +
                     " values (?, ?)";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, userName);
-            preparedStatement.setString(2, userPassword);
+            preparedStatement.setString(2, passwordHash);
+            preparedStatement.executeUpdate();
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
             return false;
@@ -27,17 +36,92 @@ public class DBUserUtils extends DBConnection {
             return false;
         } finally {
             try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
                 if (connection != null) {
                     connection.close();
                 }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Хранимые учётные данные пользователя; пароль здесь не проверяется, это делает вызывающий
+     *
+     * @return данные или {@code null}, если пользователь не найден
+     */
+    public UserCredentials getCredentials(String userName) {
+        if (userName == null) {
+            return null;
+        }
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getDBConnection();
+            String sql = "select id, userpassword from user_worker where username = ?";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, userName);
+            ResultSet rs = preparedStatement.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            return new UserCredentials(rs.getLong("id"), rs.getString("userpassword"));
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+            return null;
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
+            return null;
+        } finally {
+            try {
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
         }
-        return true;
     }
 
+    /**
+     * Заменяет хранимый хэш пароля, если он не менялся с момента чтения {@code expected}
+     */
+    public boolean updatePasswordHash(long userId, String expected, String passwordHash) {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getDBConnection();
+            String sql = "update user_worker set userpassword = ? where id = ? and userpassword = ?";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, passwordHash);
+            preparedStatement.setLong(2, userId);
+            preparedStatement.setString(3, expected);
+            return preparedStatement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+            return false;
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
+            return false;
+        } finally {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+    }
 }
@@ -4,10 +4,22 @@ import java.sql.*;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
+import db.interfaces.InterfaceWorkerDB;
 import model.*;
 import model.WorkerFabric;
 import org.slf4j.*;
@@ -15,16 +27,17 @@ import org.slf4j.*;
 /**
  * {@code DBWorkerUtils} database utilities
  */
-public class DBWorkerUtils extends DBConnection {
+public class DBWorkerUtils extends DBConnection implements InterfaceWorkerDB {
 
     static final Logger LOG = LoggerFactory.getLogger(DBWorkerUtils.class);
 
     public int insertCoordinates(float x, int y) {
         LOG.debug(String.format("insertCoordinates: x=%f, y=%d", x, y));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
         int primkey = -1;
         try {
+            connection = getDBConnection();
             String sql = "insert into coordinates(x, y) values(?, ?)";
             preparedStatement = connection.prepareStatement(sql, new String[]{"id"});
             preparedStatement.setFloat(1, x);
@@ -38,12 +51,12 @@ public class DBWorkerUtils extends DBConnection {
             LOG.debug(e.getMessage());
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
@@ -53,10 +66,11 @@ public class DBWorkerUtils extends DBConnection {
 
     public int insertPerson(float height, Integer weight, Color color) {
         LOG.debug(String.format("insertPerson: height=%f, weight=%d, color=%s", height, weight, color.getName()));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
         int primkey = -1;
         try {
+            connection = getDBConnection();
             String sql = "insert into person(height, weight, color_id) values(?, ?, ?)";
             preparedStatement = connection.prepareStatement(sql, new String[]{"id"});
             preparedStatement.setFloat(1, height);
@@ -71,12 +85,12 @@ public class DBWorkerUtils extends DBConnection {
             LOG.debug(e.getMessage());
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
@@ -89,10 +103,11 @@ public class DBWorkerUtils extends DBConnection {
     public boolean insertWorker(long worker_id, String name, int coordinates_id, int salary,
                                 LocalDate startDate, Date endDate, Status status, int person_id, long user_id) {
         LOG.debug(String.format("insertWorker"));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
         long primkey = -1;
         try {
+            connection = getDBConnection();
             String sql = "insert into worker (worker_id, name, coordinates_id, salary, startDate, endDate," +
                     " status_id, person_id, user_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
             preparedStatement = connection.prepareStatement(sql);
@@ -116,12 +131,12 @@ public class DBWorkerUtils extends DBConnection {
             return false;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
@@ -129,87 +144,221 @@ public class DBWorkerUtils extends DBConnection {
         return true;
     }
 
+    /**
+     * Вставка координат, персоны и элемента одним запросом: либо создаются все строки, либо ни одной
+     */
+    static final String INSERT_WORKER_SQL =
+            "with c as (insert into coordinates(x, y) values (?, ?) returning id),\n" +
+            "     p as (insert into person(height, weight, color_id) values (?, ?, ?) returning id)\n" +
+            "insert into worker (worker_id, name, coordinates_id, salary, startDate, endDate," +
+            " status_id, person_id, user_id)\n" +
+            "select ?, ?, c.id, ?, ?, ?, ?, p.id, ? from c, p\n" +
+            "returning id, coordinates_id, person_id";
+
+    /**
+     * То же, что {@link #INSERT_WORKER_SQL}, но только если удалось удалить прежний элемент пользователя
+     */
+    static final String UPDATE_WORKER_SQL =
+            "with d as (delete from worker where worker_id = ? and user_id = ? returning worker_id),\n" +
+            "     c as (insert into coordinates(x, y) select ?, ? where exists (select 1 from d) returning id),\n" +
+            "     p as (insert into person(height, weight, color_id) select ?, ?, ?" +
+            " where exists (select 1 from d) returning id)\n" +
+            "insert into worker (worker_id, name, coordinates_id, salary, startDate, endDate," +
+            " status_id, person_id, user_id)\n" +
+            "select ?, ?, c.id, ?, ?, ?, ?, p.id, ? from c, p\n" +
+            "returning id, coordinates_id, person_id";
+
+    /**
+     * Вариант {@link #INSERT_WORKER_SQL} для JDBC-пакета: пакетное выполнение не допускает результирующих строк
+     */
+    static final String BATCH_INSERT_WORKER_SQL =
+            "with c as (insert into coordinates(x, y) values (?, ?) returning id),\n" +
+            "     p as (insert into person(height, weight, color_id) values (?, ?, ?) returning id)\n" +
+            "insert into worker (worker_id, name, coordinates_id, salary, startDate, endDate," +
+            " status_id, person_id, user_id)\n" +
+            "select ?, ?, c.id, ?, ?, ?, ?, p.id, ? from c, p";
+
+    static final int BATCH_SIZE = Integer.getInteger("db.batch.size", 500);
+
+    @Override
     public boolean insertWorker(Worker worker) {
-        Coordinates coordinates = worker.getCoordinates();
-        Person person = worker.getPerson();
-        int coordinates_id = insertCoordinates(coordinates.getX(), coordinates.getY());
-        int person_id = insertPerson(person.getHeight(), person.getWeight(), person.getHairColor());
-        return insertWorker(worker.getId(), worker.getName(), coordinates_id, worker.getSalary(), worker.getStartDate(),
-                worker.getEndDate(), worker.getStatus(), person_id, worker.getUserId());
-    }
-
-    public boolean updateWorker(Worker worker) {
-        Coordinates coordinates = worker.getCoordinates();
-        Person person = worker.getPerson();
-        int coordinates_id = insertCoordinates(coordinates.getX(), coordinates.getY());
-        int person_id = insertPerson(person.getHeight(), person.getWeight(), person.getHairColor());
-
-        deleteWorkerById(worker.getId(), worker.getUserId());
-        return insertWorker(worker.getId(), worker.getName(), coordinates_id, worker.getSalary(), worker.getStartDate(),
-                worker.getEndDate(), worker.getStatus(), person_id, worker.getUserId());
+        return insertWorkerReturningKeys(worker) != null;
     }
 
-    public Integer getColorId(Color color) {
-        Connection connection = getDBConnection();
+    /**
+     * Вставляет элементы JDBC-пакетами по {@code db.batch.size} строк, каждый пакет в своей транзакции.
+     * Если пакет не прошёл целиком, он откатывается и повторяется построчно с точками сохранения,
+     * чтобы определить, какие именно строки ошибочны.
+     *
+     * @return {@code results[i]} - добавлен ли {@code workers.get(i)}
+     */
+    @Override
+    public boolean[] insertWorkers(List<Worker> workers) {
+        LOG.debug(String.format("insertWorkers %d", workers.size()));
+        boolean[] results = new boolean[workers.size()];
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
-        Integer id = null;
         try {
-            String sql = "select id from color where name = ?";
-            preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, color.getName().toLowerCase());
-            ResultSet rs = preparedStatement.executeQuery();
-            rs.next();
-            id = rs.getInt("id");
+            connection = getDBConnection();
+            connection.setAutoCommit(false);
+            preparedStatement = connection.prepareStatement(BATCH_INSERT_WORKER_SQL);
+            for (int from = 0; from < workers.size(); from += BATCH_SIZE) {
+                int to = Math.min(workers.size(), from + BATCH_SIZE);
+                if (!executeChunk(connection, preparedStatement, workers, from, to, results)) {
+                    executeChunkByRow(connection, preparedStatement, workers, from, to, results);
+                }
+            }
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
         }
-        return id;
+        return results;
     }
 
-    public Integer getStatusId(Status status) {
-        Connection connection = getDBConnection();
+    private boolean executeChunk(Connection connection, PreparedStatement preparedStatement, List<Worker> workers,
+                                 int from, int to, boolean[] results) throws SQLException {
+        boolean[] added = new boolean[to - from];
+        for (int i = from; i < to; i++) {
+            try {
+                setWorkerParameters(preparedStatement, 0, workers.get(i));
+                preparedStatement.addBatch();
+                added[i - from] = true;
+            } catch (RuntimeException e) {
+                LOG.debug(String.format("insertWorkers: row %d rejected: %s", i, e));
+                preparedStatement.clearParameters();
+            }
+        }
+        try {
+            preparedStatement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            LOG.debug(String.format("insertWorkers: batch %d..%d failed: %s", from, to, e.getMessage()));
+            preparedStatement.clearBatch();
+            connection.rollback();
+            return false;
+        }
+        System.arraycopy(added, 0, results, from, added.length);
+        return true;
+    }
+
+    private void executeChunkByRow(Connection connection, PreparedStatement preparedStatement, List<Worker> workers,
+                                   int from, int to, boolean[] results) throws SQLException {
+        for (int i = from; i < to; i++) {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                setWorkerParameters(preparedStatement, 0, workers.get(i));
+                preparedStatement.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+                results[i] = true;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback(savepoint);
+                preparedStatement.clearParameters();
+            }
+        }
+        connection.commit();
+    }
+
+    /**
+     * Вставляет элемент за один запрос к БД
+     *
+     * @return ключи созданных строк или {@code null}, если вставка не удалась
+     */
+    public WorkerKeys insertWorkerReturningKeys(Worker worker) {
+        LOG.debug(String.format("insertWorker %d", worker.getId()));
+        return executeWorkerWrite(INSERT_WORKER_SQL, worker, 0);
+    }
+
+    /**
+     * Заменяет элемент пользователя за один запрос к БД; чужой или отсутствующий элемент не изменяется
+     */
+    @Override
+    public boolean updateWorker(Worker worker) {
+        LOG.debug(String.format("updateWorker %d", worker.getId()));
+        return executeWorkerWrite(UPDATE_WORKER_SQL, worker, 2) != null;
+    }
+
+    private WorkerKeys executeWorkerWrite(String sql, Worker worker, int offset) {
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
-        Integer id = null;
+        WorkerKeys keys = null;
         try {
-            String sql = "select id from status where name = ?";
+            connection = getDBConnection();
             preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, status.getName().toLowerCase());
+            if (offset > 0) {
+                preparedStatement.setLong(1, worker.getId());
+                preparedStatement.setLong(2, worker.getUserId());
+            }
+            setWorkerParameters(preparedStatement, offset, worker);
             ResultSet rs = preparedStatement.executeQuery();
-            rs.next();
-            id = rs.getInt("id");
+            if (rs.next()) {
+                keys = new WorkerKeys(rs.getLong("id"), rs.getInt("coordinates_id"), rs.getInt("person_id"));
+            }
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
         }
-        return id;
+        return keys;
+    }
+
+    /**
+     * Заполняет 12 параметров вставки элемента, начиная с позиции {@code offset + 1}
+     */
+    void setWorkerParameters(PreparedStatement preparedStatement, int offset, Worker worker) throws SQLException {
+        Coordinates coordinates = worker.getCoordinates();
+        Person person = worker.getPerson();
+        preparedStatement.setFloat(offset + 1, coordinates.getX());
+        preparedStatement.setInt(offset + 2, coordinates.getY());
+        preparedStatement.setFloat(offset + 3, person.getHeight());
+        preparedStatement.setInt(offset + 4, person.getWeight());
+        preparedStatement.setInt(offset + 5, getColorId(person.getHairColor()));
+        preparedStatement.setLong(offset + 6, worker.getId());
+        preparedStatement.setString(offset + 7, worker.getName());
+        preparedStatement.setInt(offset + 8, worker.getSalary());
+        preparedStatement.setDate(offset + 9, java.sql.Date.valueOf(worker.getStartDate().toString()));
+        LocalDate localEndDate = worker.getEndDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        preparedStatement.setDate(offset + 10, java.sql.Date.valueOf(localEndDate.toString()));
+        preparedStatement.setInt(offset + 11, getStatusId(worker.getStatus()));
+        preparedStatement.setLong(offset + 12, worker.getUserId());
+    }
+
+    public Integer getColorId(Color color) {
+        return DBLookupCache.getColorId(color);
+    }
+
+    public Integer getStatusId(Status status) {
+        return DBLookupCache.getStatusId(status);
     }
 
     public Integer getWorkerId(Worker worker) {
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
         Integer id = null;
         try {
+            connection = getDBConnection();
             String sql = "select id from worker where name = ?";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, worker.getName().toLowerCase());
@@ -220,12 +369,12 @@ public class DBWorkerUtils extends DBConnection {
             LOG.debug(e.getMessage());
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
@@ -233,245 +382,539 @@ public class DBWorkerUtils extends DBConnection {
         return id;
     }
 
-    public boolean deleteWorkerById(long id, long currentUserId) {
+    @Override
+    public List<Long> deleteWorkerById(long id, long currentUserId) {
         LOG.debug(String.format("deleteWorkerById %d", id));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
-        Worker worker = new Worker();
+        List<Long> ids;
         try {
-            String sql = "delete from worker where worker_id = ? and user_id = ?";
+            connection = getDBConnection();
+            String sql = "delete from worker where worker_id = ? and user_id = ? returning worker_id";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setLong(1, id);
             preparedStatement.setLong(2, currentUserId);
-            int result = preparedStatement.executeUpdate();
-            LOG.debug(String.format("Deleted row, id = %d, res = %d ", id, result));
+            ids = readIds(preparedStatement.executeQuery());
+            LOG.debug(String.format("Deleted row, id = %d, res = %d ", id, ids.size()));
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
-            return false;
+            return null;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
 
         }
-        return true;
+        return ids;
     }
 
 
-    public boolean deleteWorker(long currentUserId) {
+    @Override
+    public List<Long> deleteWorker(long currentUserId) {
         LOG.debug(String.format("deleteWorker %d", currentUserId));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
+        List<Long> ids;
         try {
-            String sql = "delete from worker where user_id = ?";
+            connection = getDBConnection();
+            String sql = "delete from worker where user_id = ? returning worker_id";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setLong(1, currentUserId);
-            preparedStatement.execute();
+            ids = readIds(preparedStatement.executeQuery());
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
-            return false;
+            return null;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
 
         }
-        return true;
+        return ids;
     }
 
-    public boolean deleteWorkerByGreaterSalary(int salary, long currentUserId) {
+    @Override
+    public List<Long> deleteWorkerByGreaterSalary(int salary, long currentUserId) {
         LOG.debug(String.format("deleteWorkerByGreaterSalary"));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
+        List<Long> ids;
         try {
-            String sql = "delete from worker where salary >= ? and user_id = ?";
+            connection = getDBConnection();
+            String sql = "delete from worker where salary > ? and user_id = ? returning worker_id";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setInt(1, salary);
             preparedStatement.setLong(2, currentUserId);
-            preparedStatement.execute();
+            ids = readIds(preparedStatement.executeQuery());
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
-            return false;
+            return null;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
 
         }
-        return true;
+        return ids;
     }
 
-    public boolean deleteWorkerByLowerSalary(int salary, long currentUserId) {
+    @Override
+    public List<Long> deleteWorkerByLowerSalary(int salary, long currentUserId) {
         LOG.debug(String.format("deleteWorkerByLowerSalary"));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
+        List<Long> ids;
         try {
-            String sql = "delete from worker where salary <= ? and user_id = ?";
+            connection = getDBConnection();
+            String sql = "delete from worker where salary < ? and user_id = ? returning worker_id";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setInt(1, salary);
             preparedStatement.setLong(2, currentUserId);
-            preparedStatement.execute();
+            ids = readIds(preparedStatement.executeQuery());
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
-            return false;
+            return null;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
 
         }
-        return true;
+        return ids;
     }
 
-    public boolean deleteWorkerByEndDate(Date endDate, long currentUserId) {
+    @Override
+    public List<Long> deleteWorkerByEndDate(Date endDate, long currentUserId) {
         LOG.debug(String.format("deleteWorkerByEndDate"));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
+        List<Long> ids;
         try {
-            String sql = "delete from worker where enddate = ? and user_id = ?";
+            connection = getDBConnection();
+            String sql = "delete from worker where enddate = ? and user_id = ? returning worker_id";
             preparedStatement = connection.prepareStatement(sql);
             java.sql.Date sqlEndDate = new java.sql.Date(endDate.getTime());
             preparedStatement.setDate(1, sqlEndDate);
             preparedStatement.setLong(2, currentUserId);
-            preparedStatement.executeUpdate();
+            ids = readIds(preparedStatement.executeQuery());
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
-            return false;
+            return null;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
 
         }
-        return true;
+        return ids;
 
 
     }
 
-    public boolean deleteWorkerByStartDate(LocalDate startDate, long currentUserId) {
+    @Override
+    public List<Long> deleteWorkerByStartDate(LocalDate startDate, long currentUserId) {
         LOG.debug(String.format("deleteWorkerByStartDate"));
-        Connection connection = getDBConnection();
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
+        List<Long> ids;
         try {
-            String sql = "delete from worker where startdate = ? and user_id = ?";
+            connection = getDBConnection();
+            String sql = "delete from worker where startdate = ? and user_id = ? returning worker_id";
             preparedStatement = connection.prepareStatement(sql);
             Instant instant = Instant.from(startDate.atStartOfDay(ZoneId.of("GMT")));
             Date newStartDate = Date.from(instant);
             java.sql.Date sqlStartDate = new java.sql.Date(newStartDate.getTime());
             preparedStatement.setDate(1, sqlStartDate);
             preparedStatement.setLong(2, currentUserId);
-            preparedStatement.execute();
+            ids = readIds(preparedStatement.executeQuery());
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
-            return false;
+            return null;
         } finally {
             try {
-                if (connection != null) {
-                    connection.close();
-                }
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage()); }
 
         }
-        return true;
+        return ids;
     }
 
+    /**
+     * id элементов, возвращённые {@code returning worker_id}
+     */
+    private List<Long> readIds(ResultSet rs) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        while (rs.next()) {
+            ids.add(rs.getLong(1));
+        }
+        return ids;
+    }
+
+    /**
+     * Статус и цвет читаются по id и разворачиваются через {@link DBLookupCache}, владелец через
+     * {@link DBUserRegistry}, без соединения со справочниками и {@code user_worker};
+     * строки приходят порциями через курсор на стороне сервера
+     */
+    static final String SELECT_WORKERS_SQL = "select \n" +
+            "    worker.worker_id, worker.name, worker.salary, worker.startdate, worker.enddate,\n" +
+            "    coordinates.x, coordinates.y, worker.status_id,\n" +
+            "    person.\"height\", person.weight, person.color_id,\n" +
+            "    worker.user_id\n" +
+            "from worker\n" +
+            "    inner join coordinates on worker.coordinates_id = coordinates.\"id\"\n" +
+            "    inner join person on worker.person_id = person.\"id\"";
+    static final int FETCH_SIZE = Integer.getInteger("db.fetch.size", 1000);
+    static final int LOAD_THREADS = Integer.getInteger("db.load.threads", Runtime.getRuntime().availableProcessors());
+
+    @Override
     public ConcurrentHashMap<Long, Worker> getWorkers() {
-        Connection connection = getDBConnection();
+        return queryWorkers(SELECT_WORKERS_SQL, null);
+    }
+
+    /**
+     * Текущие строки элементов с заданными id; отсутствующие в БД id просто не попадают в результат
+     */
+    @Override
+    public ConcurrentHashMap<Long, Worker> getWorkersByIds(Collection<Long> ids) {
+        return queryWorkers(SELECT_WORKERS_SQL + "\nwhere worker.worker_id = any(?)", ids);
+    }
+
+    /**
+     * Потоковое чтение элементов; {@code null} при любой ошибке чтения или разбора строки, чтобы
+     * частичный результат не подменил коллекцию. Драйвер PostgreSQL использует курсор только вне автофиксации и при
+     * ненулевом fetch size, иначе буферизует весь результат. Поток чтения только копирует значения
+     * столбцов в {@link WorkerRow}; элементы из заполненных порций собирают {@code db.load.threads}
+     * потоков, а число порций в работе ограничено, так что в памяти одновременно не больше нескольких порций строк
+     */
+    private ConcurrentHashMap<Long, Worker> queryWorkers(String sql, Collection<Long> ids) {
+        Connection connection = null;
         PreparedStatement preparedStatement = null;
         ConcurrentHashMap<Long, Worker> workers = new ConcurrentHashMap<>();
+        ExecutorService decoders = null;
+        Semaphore inFlight = new Semaphore(Math.max(1, LOAD_THREADS) * 2);
+        List<Future<?>> pending = new ArrayList<>();
+        boolean complete = false;
 
         try {
-            String sql = "select \n" +
-                    "    worker_id as worker_id," +
-                    "    worker.name as worker_name, worker.creationdate, worker.salary, worker.startdate," +
-                    " worker.enddate,\n" +
-                    "    coordinates.x, coordinates.y, \n" +
-                    "    status.\"name\" as status_name,\n" +
-                    "    color.\"name\" as color_name,\n" +
-                    "    person.\"height\", person.weight,\n" +
-                    "    user_worker.username, user_worker.userpassword\n" +
-                    "from worker\n" +
-                    "    inner join coordinates on worker.coordinates_id = coordinates.\"id\"\n" +
-                    "    inner join status on worker.status_id = status.\"id\"\n" +
-                    "    inner join person on worker.person_id = person.\"id\"\n" +
-                    "    inner join color on person.color_id = color.\"id\"\n" +
-                    "    inner join user_worker on worker.user_id = user_worker.\"id\";";
+            connection = getDBConnection();
+            connection.setAutoCommit(false);
             preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setFetchSize(FETCH_SIZE);
+            if (ids != null) {
+                preparedStatement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            }
+            ResultSet rs = preparedStatement.executeQuery();
+            List<WorkerRow> rows = new ArrayList<>(FETCH_SIZE);
+            while (rs.next()) {
+                rows.add(new WorkerRow(rs));
+                if (rows.size() == FETCH_SIZE) {
+                    if (decoders == null) {
+                        decoders = Executors.newFixedThreadPool(Math.max(1, LOAD_THREADS), r -> {
+                            Thread t = new Thread(r, "worker-load");
+                            t.setDaemon(true);
+                            return t;
+                        });
+                    }
+                    List<WorkerRow> batch = rows;
+                    inFlight.acquire();
+                    pending.add(decoders.submit(() -> {
+                        try {
+                            decode(batch, workers);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                    awaitDone(pending);
+                    rows = new ArrayList<>(FETCH_SIZE);
+                }
+            }
+            decode(rows, workers);
+            for (Future<?> future : pending) {
+                future.get();
+            }
+            connection.commit();
+            complete = true;
+        } catch (SQLException e) {
+            LOG.debug(String.format("Workers not loaded: %s", e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.debug(String.format("Workers not loaded: %s", e.getMessage()));
+        } catch (ExecutionException e) {
+            LOG.debug(String.format("Workers not loaded: %s", e.getCause().getMessage()));
+        } catch (RuntimeException e) {
+            LOG.debug(String.format("Workers not loaded: %s", e.getMessage()));
+        } finally {
+            if (decoders != null) {
+                decoders.shutdownNow();
+            }
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+        return complete ? workers : null;
+    }
+
+    /**
+     * Забирает завершённые порции; ошибка разбора любой из них прерывает чтение
+     */
+    private static void awaitDone(List<Future<?>> pending) throws InterruptedException, ExecutionException {
+        Iterator<Future<?>> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Future<?> future = iterator.next();
+            if (future.isDone()) {
+                future.get();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Собирает элементы порции; строка, которую не удалось разобрать, прерывает всё чтение,
+     * чтобы коллекция без неё не была принята за полную
+     */
+    private static void decode(List<WorkerRow> rows, ConcurrentHashMap<Long, Worker> workers) {
+        for (WorkerRow row : rows) {
+            Worker worker;
+            try {
+                worker = row.toWorker();
+            } catch (RuntimeException e) {
+                throw new IllegalStateException(String.format("worker %d: %s", row.id, e.getMessage()), e);
+            }
+            workers.put(worker.getId(), worker);
+        }
+    }
+
+    /**
+     * {@code WorkerRow} Сырые значения одной строки результата; {@link Worker} из неё собирается в другом потоке
+     */
+    private static final class WorkerRow {
+        final long id;
+        final String name;
+        final int salary;
+        final java.sql.Date startDate;
+        final java.sql.Date endDate;
+        final float x;
+        final int y;
+        final int statusId;
+        final float height;
+        final int weight;
+        final int colorId;
+        final long userId;
+
+        WorkerRow(ResultSet rs) throws SQLException {
+            this.id = rs.getLong(1);
+            this.name = rs.getString(2);
+            this.salary = rs.getInt(3);
+            this.startDate = rs.getDate(4);
+            this.endDate = rs.getDate(5);
+            this.x = rs.getFloat(6);
+            this.y = rs.getInt(7);
+            this.statusId = rs.getInt(8);
+            this.height = rs.getFloat(9);
+            this.weight = rs.getInt(10);
+            this.colorId = rs.getInt(11);
+            this.userId = rs.getLong(12);
+        }
+
+        Worker toWorker() {
+            Worker worker = WorkerFabric.create(
+                    name,
+                    x,
+                    y,
+                    salary,
+                    startDate == null ? null : startDate.toLocalDate(),
+                    endDate,
+                    DBLookupCache.statusOf(statusId),
+                    height,
+                    weight,
+                    DBLookupCache.colorOf(colorId),
+                    DBUserRegistry.get(userId)
+            );
+            worker.setId(id);
+            return worker;
+        }
+    }
+
+    /**
+     * Число элементов в БД; -1, если получить не удалось
+     */
+    @Override
+    public long countWorkers() {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        long count = -1;
+        try {
+            connection = getDBConnection();
+            preparedStatement = connection.prepareStatement("select count(*) from worker");
+            ResultSet rs = preparedStatement.executeQuery();
+            if (rs.next()) {
+                count = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
+        } finally {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Последний номер в журнале изменений {@code worker_change_log}; -1, если получить не удалось
+     */
+    @Override
+    public long getChangeWatermark() {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        long watermark = -1;
+        try {
+            connection = getDBConnection();
+            preparedStatement = connection.prepareStatement("select coalesce(max(seq), 0) from worker_change_log");
             ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()) {
-
-                Worker worker = WorkerFabric.create(
-                        rs.getString("worker_name"),
-                        rs.getFloat("x"),
-                        rs.getInt("y"),
-                        rs.getInt("salary"),
-                        rs.getDate("startdate").toLocalDate(),
-                        rs.getDate("enddate"),
-                        Status.fromStr(rs.getString("status_name")),
-                        rs.getFloat("height"),
-                        rs.getInt("weight"),
-                        Color.fromStr(rs.getString("color_name")),
-                        new User(rs.getString("username"), rs.getString("userpassword"))
-                );
-                worker.setId(rs.getLong("worker_id"));
-
-                workers.put(worker.getId(), worker);
-                //LOG.debug(String.format("workers.put: %s", worker));
+            if (rs.next()) {
+                watermark = rs.getLong(1);
             }
         } catch (SQLException e) {
             LOG.debug(e.getMessage());
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
         } finally {
             try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
                 if (connection != null) {
                     connection.close();
                 }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * id элементов, добавленных или удалённых после {@code watermark}; {@code null} при ошибке
+     */
+    @Override
+    public Set<Long> getChangedIds(long watermark) {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        Set<Long> ids = new HashSet<>();
+        try {
+            connection = getDBConnection();
+            preparedStatement = connection.prepareStatement(
+                    "select distinct worker_id from worker_change_log where seq > ?");
+            preparedStatement.setLong(1, watermark);
+            ids.addAll(readIds(preparedStatement.executeQuery()));
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+            return null;
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
+            return null;
+        } finally {
+            try {
                 if (preparedStatement != null) {
                     preparedStatement.close();
                 }
+                if (connection != null) {
+                    connection.close();
+                }
             } catch (SQLException exception) {
                 LOG.debug(exception.getMessage());
             }
         }
-        return workers;
+        return ids;
     }
-}
 
+    /**
+     * Удаляет из журнала изменений записи, уже учтённые во всех хранимых снимках
+     */
+    @Override
+    public void pruneChangeLog(long watermark) {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getDBConnection();
+            preparedStatement = connection.prepareStatement("delete from worker_change_log where seq <= ?");
+            preparedStatement.setLong(1, watermark);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            LOG.debug(e.getMessage());
+        } catch (Exception e) {
+            LOG.debug(e.getMessage());
+        } finally {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException exception) {
+                LOG.debug(exception.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package db;
+
+/**
+ * {@code UserCredentials} id пользователя и хранимый хэш его пароля из {@code user_worker}
+ */
+public class UserCredentials {
+    private final long userId;
+    private final String passwordHash;
+
+    public UserCredentials(long userId, String passwordHash) {
+        this.userId = userId;
+        this.passwordHash = passwordHash;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    @Override
+    public String toString() {
+        return "UserCredentials{" +
+                "userId=" + userId +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package db;
+
+/**
+ * {@code WorkerKeys} Первичные ключи строк, созданных при вставке элемента
+ */
+public class WorkerKeys {
+    private final long id;
+    private final int coordinatesId;
+    private final int personId;
+
+    public WorkerKeys(long id, int coordinatesId, int personId) {
+        this.id = id;
+        this.coordinatesId = coordinatesId;
+        this.personId = personId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getCoordinatesId() {
+        return coordinatesId;
+    }
+
+    public int getPersonId() {
+        return personId;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerKeys{" +
+                "id=" + id +
+                ", coordinatesId=" + coordinatesId +
+                ", personId=" + personId +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package db.interfaces;
+
+import model.Worker;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code InterfaceWorkerDB} Операции с таблицей {@code worker}, которые нужны коллекции в памяти.
+ * Методы удаления возвращают id удалённых строк или {@code null} при ошибке; методы чтения элементов
+ * возвращают {@code null}, если прочитать их целиком не удалось, а не частичный результат.
+ */
+public interface InterfaceWorkerDB {
+
+    boolean insertWorker(Worker worker);
+    boolean[] insertWorkers(List<Worker> workers);
+    boolean updateWorker(Worker worker);
+    List<Long> deleteWorkerById(long id, long currentUserId);
+    List<Long> deleteWorker(long currentUserId);
+    List<Long> deleteWorkerByGreaterSalary(int salary, long currentUserId);
+    List<Long> deleteWorkerByLowerSalary(int salary, long currentUserId);
+    List<Long> deleteWorkerByEndDate(Date endDate, long currentUserId);
+    List<Long> deleteWorkerByStartDate(LocalDate startDate, long currentUserId);
+    ConcurrentHashMap<Long, Worker> getWorkers();
+    ConcurrentHashMap<Long, Worker> getWorkersByIds(Collection<Long> ids);
+    long countWorkers();
+    long getChangeWatermark();
+    Set<Long> getChangedIds(long watermark);
+    void pruneChangeLog(long watermark);
+}
@@ -11,6 +11,7 @@ public enum CommandCollection implements Serializable {
     INFO("info", "информация о коллекции"),
     SHOW("show", "вывод всех элементов коллекции в строковом представлении"),
     INSERT("insert", "добавление нового элемента с заданным ключом"),
+    INSERT_BATCH("insertBatch", "добавление нескольких элементов одним запросом"),
     UPDATE_ID("update id", "обновление значения элемента коллекции, id которого равен заданному"),
     REMOVE_KEY("remove key", "удаление элемента из коллекции по ключу"),
     CLEAR("clear", "очистка коллекции"),
@@ -26,6 +27,9 @@ public enum CommandCollection implements Serializable {
             "значение поля startDate которого эквивалентно заданному"),
     PRINT_FIELD_DESCENDING_END_DATE("printEndDate",  "вывод значения поля endDate всех элементов" +
             " в порядке убывания"),
+    RESEND("resend", "повторная отправка потерянных частей ответа"),
+    BUSY("busy", "сервер перегружен, запрос отклонён; повторите позже"),
+    LOGIN("login", "вход по логину и паролю; в ответ выдаётся токен сессии для следующих запросов"),
     UNKNOWN("unknown command", "команда не найдена; help - справка по доступным командам");
 
 
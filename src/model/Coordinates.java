@@ -4,6 +4,9 @@ package model;
 import java.io.Serializable;
 
 public class Coordinates implements Serializable {
+    /** значение, вычисленное для исходной версии класса: старые клиенты шлют его в Java-сериализации */
+    private static final long serialVersionUID = -3333763461027143965L;
+
     private Float x;
     private Integer y;
 
@@ -4,15 +4,101 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
+/**
+ * {@code Hasher} Хэширование паролей: PBKDF2-HMAC-SHA256 со своей случайной солью у каждого пользователя
+ * и настраиваемым числом итераций {@code hasher.iterations}. Хэш хранится строкой
+ * {@code pbkdf2-sha256$<итерации>$<соль>$<хэш>}, поэтому смена стоимости не ломает старые записи.
+ * Старые хэши SHA-256 с общей солью ({@link #getHash(String)}) проверяются для совместимости.
+ */
 public class Hasher {
     static final Logger LOG = LoggerFactory.getLogger(Hasher.class);
+    static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    static final String PREFIX = "pbkdf2-sha256$";
+    static final int ITERATIONS = Integer.getInteger("hasher.iterations", 120_000);
+    static final int SALT_BYTES = 16;
+    static final int KEY_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
     String passwordToHash;
     String salt;
 
+    /**
+     * Хэш пароля для хранения в БД с новой случайной солью и текущей стоимостью
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return encode(ITERATIONS, salt, pbkdf2(password, salt, ITERATIONS));
+    }
+
+    /**
+     * Сравнивает пароль с хранимым хэшем за постоянное время; понимает и старый формат
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            String legacy = getHash(password);
+            return legacy != null && MessageDigest.isEqual(
+                    legacy.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+        } catch (IllegalArgumentException e) {
+            LOG.debug(e.getLocalizedMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Хэш записан в старом формате или с меньшей стоимостью, чем текущая
+     */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String encode(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Старый формат: SHA-256 с общей солью; остаётся только для проверки ранее сохранённых паролей
+     */
     public static String getHash(String password) {
         String hash = null;
         Hasher hasher = new Hasher();
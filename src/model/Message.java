@@ -6,12 +6,17 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 
 public class Message implements Serializable {
+    /** значение, вычисленное для исходной версии класса: старые клиенты шлют его в Java-сериализации */
+    private static final long serialVersionUID = -6127033092264631322L;
+
     CommandCollection collection;
     Worker worker;
     Integer salary;
@@ -20,6 +25,14 @@ public class Message implements Serializable {
     Long key;
     ConcurrentHashMap<Long, Worker> workers;
     LocalDateTime initData;
+    Long responseId;
+    int[] chunks;
+    ArrayList<Worker> batch;
+    boolean[] results;
+    Integer offset;
+    Integer limit;
+    int[] endDays;
+    String token;
 
     public Message(CommandCollection collection) {
         this.collection = collection;
@@ -66,6 +79,58 @@ public class Message implements Serializable {
         this.worker = new Worker(user);
     }
 
+    /**
+     * Пакетная вставка нескольких элементов одним запросом
+     */
+    public Message(CommandCollection collection, List<Worker> batch, User user) {
+        this.collection = collection;
+        this.batch = new ArrayList<>(batch);
+        this.worker = new Worker(user);
+    }
+
+    /**
+     * Ответ на пакетную вставку: {@code results[i]} сообщает, добавлен ли i-й элемент пакета
+     */
+    public Message(CommandCollection collection, boolean[] results) {
+        this.collection = collection;
+        this.results = results;
+    }
+
+    /**
+     * Запрос страницы значений endDate: {@code limit} значений, начиная с {@code offset}, по убыванию
+     */
+    public Message(CommandCollection collection, Integer offset, Integer limit, User user) {
+        this.collection = collection;
+        this.offset = offset;
+        this.limit = limit;
+        this.worker = new Worker(user);
+    }
+
+    /**
+     * Ответ со значениями endDate (дни от 1970-01-01) в порядке убывания
+     */
+    public Message(CommandCollection collection, int[] endDays) {
+        this.collection = collection;
+        this.endDays = endDays;
+    }
+
+    /**
+     * Запрос повторной отправки частей ответа {@code responseId}; пустой {@code chunks} означает все части
+     */
+    public Message(CommandCollection collection, long responseId, int[] chunks) {
+        this.collection = collection;
+        this.responseId = responseId;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Ответ на {@code LOGIN}: токен сессии или {@code null}, если вход не выполнен либо сессия истекла
+     */
+    public Message(CommandCollection collection, String token) {
+        this.collection = collection;
+        this.token = token;
+    }
+
     public Message(CommandCollection collection, LocalDate startDate, User user) {
         this.collection = collection;
         this.startDate = startDate;
@@ -105,5 +170,43 @@ public class Message implements Serializable {
     public LocalDateTime getInitData() {
         return initData;
     }
-}
 
+    public Long getResponseId() {
+        return responseId;
+    }
+
+    public int[] getChunks() {
+        return chunks;
+    }
+
+    public List<Worker> getBatch() {
+        return batch;
+    }
+
+    public boolean[] getResults() {
+        return results;
+    }
+
+    public Integer getOffset() {
+        return offset;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public int[] getEndDays() {
+        return endDays;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Токен сессии из ответа на {@code LOGIN}; запрос с токеном выполняется от имени пользователя сессии
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -0,0 +1,468 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code MessageCodec} Компактный бинарный формат {@link Message} поверх {@link ByteBuffer}.
+ *
+ * <p>Каждый пакет начинается с заголовка {@code [MAGIC][VERSION][FORMAT]}. В формате {@link Format#BINARY}
+ * поля пишутся напрямую в буфер с битовой маской присутствия; {@link Format#JAVA} оставлен как запасной
+ * вариант и содержит обычный поток {@link ObjectOutputStream}. Пакет без заголовка, начинающийся с
+ * сигнатуры Java-сериализации, определяется как {@link Format#LEGACY}: так пишут старые клиенты, и ответ
+ * им тоже пишется обычным потоком без заголовка.
+ *
+ * <p>Пароль пользователя пишется только для {@link Message#getWorker()} запроса, но не для элементов коллекции.
+ * Владельцы элементов коллекции пишутся один раз в таблицу пользователей перед элементами, а элементы
+ * ссылаются на них по id; при чтении все элементы одного пользователя получают общий экземпляр {@link User}.
+ */
+public class MessageCodec {
+
+    public static final byte MAGIC = 0x57;
+    /** меняется при любом несовместимом изменении формата, в т.ч. порядка констант перечислений */
+    public static final byte VERSION = 6;
+    public static final int HEADER_SIZE = 3;
+    /** наибольшее число элементов в любой коллекции сообщения */
+    public static final int MAX_COUNT = 1 << 24;
+
+    private static final short JAVA_STREAM_MAGIC = (short) 0xACED;
+
+    private static final int M_WORKER = 1;
+    private static final int M_SALARY = 1 << 1;
+    private static final int M_DATE = 1 << 2;
+    private static final int M_START_DATE = 1 << 3;
+    private static final int M_KEY = 1 << 4;
+    private static final int M_WORKERS = 1 << 5;
+    private static final int M_INIT_DATA = 1 << 6;
+    private static final int M_RESPONSE_ID = 1 << 7;
+    private static final int M_CHUNKS = 1 << 8;
+    private static final int M_BATCH = 1 << 9;
+    private static final int M_RESULTS = 1 << 10;
+    private static final int M_OFFSET = 1 << 11;
+    private static final int M_LIMIT = 1 << 12;
+    private static final int M_END_DAYS = 1 << 13;
+    private static final int M_TOKEN = 1 << 14;
+
+    private static final int W_ID = 1;
+    private static final int W_NAME = 1 << 1;
+    private static final int W_COORDINATES = 1 << 2;
+    private static final int W_CREATION_DATE = 1 << 3;
+    private static final int W_SALARY = 1 << 4;
+    private static final int W_START_DATE = 1 << 5;
+    private static final int W_END_DATE = 1 << 6;
+    private static final int W_STATUS = 1 << 7;
+    private static final int W_PERSON = 1 << 8;
+    private static final int W_USER = 1 << 9;
+    private static final int W_PASSWORD = 1 << 10;
+    /** вместо имени пользователя только его id; имя берётся из таблицы пользователей сообщения */
+    private static final int W_USER_REF = 1 << 11;
+
+    public enum Format {
+        BINARY,
+        JAVA,
+        /** часть длинного ответа, см. {@code net.ChunkedResponses} */
+        CHUNK,
+        /** поток Java-сериализации без заголовка от старого клиента; в заголовке пакета не встречается */
+        LEGACY
+    }
+
+    /**
+     * Определяет формат пакета, не сдвигая позицию буфера
+     */
+    public static Format detect(ByteBuffer in) {
+        if (in.remaining() >= 2 && in.getShort(in.position()) == JAVA_STREAM_MAGIC) {
+            return Format.LEGACY;
+        }
+        if (in.remaining() >= HEADER_SIZE && in.get(in.position()) == MAGIC
+                && in.get(in.position() + 2) == Format.JAVA.ordinal()) {
+            return Format.JAVA;
+        }
+        return Format.BINARY;
+    }
+
+    /**
+     * Пишет пакет; для {@link Format#LEGACY} заголовка нет, пакет целиком - поток Java-сериализации
+     */
+    public static void write(Message message, Format format, ByteBuffer out) throws IOException {
+        if (format == Format.CHUNK) {
+            throw new IOException("Chunks are written by net.ChunkedResponses");
+        }
+        if (format != Format.LEGACY) {
+            out.put(MAGIC);
+            out.put(VERSION);
+            out.put((byte) format.ordinal());
+        }
+        if (format == Format.BINARY) {
+            writeMessage(message, out);
+            return;
+        }
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(message);
+            oos.flush();
+            out.put(baos.toByteArray());
+        }
+    }
+
+    public static Message read(ByteBuffer in) throws IOException {
+        if (in.remaining() >= 2 && in.getShort(in.position()) == JAVA_STREAM_MAGIC) {
+            return readJava(in);
+        }
+        if (in.remaining() < HEADER_SIZE || in.get() != MAGIC) {
+            throw new IOException("Unknown packet header");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported protocol version %d", version));
+        }
+        byte format = in.get();
+        if (format == Format.JAVA.ordinal()) {
+            return readJava(in);
+        }
+        if (format == Format.CHUNK.ordinal()) {
+            throw new IOException("Chunked response must be reassembled before decoding");
+        }
+        if (format != Format.BINARY.ordinal()) {
+            throw new IOException(String.format("Unknown packet format %d", format));
+        }
+        return readMessage(in);
+    }
+
+    private static Message readJava(ByteBuffer in) throws IOException {
+        byte[] bytes = new byte[in.remaining()];
+        in.get(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Message) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public static void writeMessage(Message m, ByteBuffer out) {
+        int mask = 0;
+        if (m.worker != null) mask |= M_WORKER;
+        if (m.salary != null) mask |= M_SALARY;
+        if (m.date != null) mask |= M_DATE;
+        if (m.startDate != null) mask |= M_START_DATE;
+        if (m.key != null) mask |= M_KEY;
+        if (m.workers != null) mask |= M_WORKERS;
+        if (m.initData != null) mask |= M_INIT_DATA;
+        if (m.responseId != null) mask |= M_RESPONSE_ID;
+        if (m.chunks != null) mask |= M_CHUNKS;
+        if (m.batch != null) mask |= M_BATCH;
+        if (m.results != null) mask |= M_RESULTS;
+        if (m.offset != null) mask |= M_OFFSET;
+        if (m.limit != null) mask |= M_LIMIT;
+        if (m.endDays != null) mask |= M_END_DAYS;
+        if (m.token != null) mask |= M_TOKEN;
+
+        writeEnum(m.collection, out);
+        out.putShort((short) mask);
+        if (m.worker != null) writeWorker(m.worker, true, out);
+        if (m.salary != null) out.putInt(m.salary);
+        if (m.date != null) out.putLong(m.date.getTime());
+        if (m.startDate != null) out.putInt((int) m.startDate.toEpochDay());
+        if (m.key != null) out.putLong(m.key);
+        if (m.workers != null) {
+            List<Map.Entry<Long, Worker>> entries = new ArrayList<>(m.workers.entrySet());
+            Map<Long, User> users = new HashMap<>();
+            for (Map.Entry<Long, Worker> e : entries) {
+                User user = e.getValue().getUser();
+                if (user != null) {
+                    users.putIfAbsent(user.getUserId(), user);
+                }
+            }
+            out.putInt(users.size());
+            for (User user : users.values()) {
+                out.putLong(user.getUserId());
+                writeString(user.getUserName(), out);
+            }
+            out.putInt(entries.size());
+            for (Map.Entry<Long, Worker> e : entries) {
+                out.putLong(e.getKey());
+                writeWorker(e.getValue(), false, true, out);
+            }
+        }
+        if (m.initData != null) writeDateTime(m.initData, out);
+        if (m.responseId != null) out.putLong(m.responseId);
+        if (m.chunks != null) {
+            out.putInt(m.chunks.length);
+            for (int chunk : m.chunks) {
+                out.putInt(chunk);
+            }
+        }
+        if (m.batch != null) {
+            out.putInt(m.batch.size());
+            for (Worker w : m.batch) {
+                writeWorker(w, false, out);
+            }
+        }
+        if (m.results != null) {
+            out.putInt(m.results.length);
+            byte bits = 0;
+            for (int i = 0; i < m.results.length; i++) {
+                if (m.results[i]) {
+                    bits |= 1 << (i & 7);
+                }
+                if ((i & 7) == 7 || i == m.results.length - 1) {
+                    out.put(bits);
+                    bits = 0;
+                }
+            }
+        }
+        if (m.offset != null) out.putInt(m.offset);
+        if (m.limit != null) out.putInt(m.limit);
+        if (m.endDays != null) {
+            out.putInt(m.endDays.length);
+            for (int day : m.endDays) {
+                out.putInt(day);
+            }
+        }
+        if (m.token != null) writeString(m.token, out);
+    }
+
+    public static Message readMessage(ByteBuffer in) throws IOException {
+        Message m = new Message(readEnum(CommandCollection.values(), in));
+        int mask = in.getShort() & 0xffff;
+        if ((mask & M_WORKER) != 0) m.worker = readWorker(in);
+        if ((mask & M_SALARY) != 0) m.salary = in.getInt();
+        if ((mask & M_DATE) != 0) m.date = new Date(in.getLong());
+        if ((mask & M_START_DATE) != 0) m.startDate = LocalDate.ofEpochDay(in.getInt());
+        if ((mask & M_KEY) != 0) m.key = in.getLong();
+        if ((mask & M_WORKERS) != 0) {
+            int userCount = readCount(in, 8 + 2);
+            Map<Long, User> users = new HashMap<>(Math.max(16, userCount * 4 / 3 + 1));
+            for (int i = 0; i < userCount; i++) {
+                long userId = in.getLong();
+                User user = new User(readString(in), null);
+                user.setUserId(userId);
+                users.put(userId, user);
+            }
+            int size = readCount(in, 8 + 2);
+            ConcurrentHashMap<Long, Worker> workers = new ConcurrentHashMap<>(Math.max(16, size * 4 / 3 + 1));
+            for (int i = 0; i < size; i++) {
+                long key = in.getLong();
+                workers.put(key, readWorker(in, users));
+            }
+            m.workers = workers;
+        }
+        if ((mask & M_INIT_DATA) != 0) m.initData = readDateTime(in);
+        if ((mask & M_RESPONSE_ID) != 0) m.responseId = in.getLong();
+        if ((mask & M_CHUNKS) != 0) {
+            int[] chunks = new int[readCount(in, 4)];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = in.getInt();
+            }
+            m.chunks = chunks;
+        }
+        if ((mask & M_BATCH) != 0) {
+            int size = readCount(in, 2);
+            ArrayList<Worker> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(readWorker(in));
+            }
+            m.batch = batch;
+        }
+        if ((mask & M_RESULTS) != 0) {
+            int count = in.getInt();
+            if (count < 0 || count > MAX_COUNT || (count + 7) / 8 > in.remaining()) {
+                throw new IOException(String.format("Invalid result count %d", count));
+            }
+            boolean[] results = new boolean[count];
+            byte bits = 0;
+            for (int i = 0; i < results.length; i++) {
+                if ((i & 7) == 0) {
+                    bits = in.get();
+                }
+                results[i] = (bits & (1 << (i & 7))) != 0;
+            }
+            m.results = results;
+        }
+        if ((mask & M_OFFSET) != 0) m.offset = in.getInt();
+        if ((mask & M_LIMIT) != 0) m.limit = in.getInt();
+        if ((mask & M_END_DAYS) != 0) {
+            int[] endDays = new int[readCount(in, 4)];
+            for (int i = 0; i < endDays.length; i++) {
+                endDays[i] = in.getInt();
+            }
+            m.endDays = endDays;
+        }
+        if ((mask & M_TOKEN) != 0) m.token = readString(in);
+        return m;
+    }
+
+    /**
+     * Читает число элементов и проверяет его до выделения памяти: оно не может быть отрицательным,
+     * больше {@link #MAX_COUNT} и больше, чем помещается в остаток пакета при размере элемента
+     * не меньше {@code minElementSize} байт
+     */
+    private static int readCount(ByteBuffer in, int minElementSize) throws IOException {
+        int count = in.getInt();
+        if (count < 0 || count > MAX_COUNT || count > in.remaining() / minElementSize) {
+            throw new IOException(String.format("Invalid element count %d", count));
+        }
+        return count;
+    }
+
+    public static void writeWorker(Worker w, boolean withPassword, ByteBuffer out) {
+        writeWorker(w, withPassword, false, out);
+    }
+
+    private static void writeWorker(Worker w, boolean withPassword, boolean userRef, ByteBuffer out) {
+        User user = w.getUser();
+        int mask = 0;
+        if (w.getRawId() != null) mask |= W_ID;
+        if (w.getName() != null) mask |= W_NAME;
+        if (w.getCoordinates() != null) mask |= W_COORDINATES;
+        if (w.getCreationDate() != null) mask |= W_CREATION_DATE;
+        if (w.getSalary() != null) mask |= W_SALARY;
+        if (w.getStartDate() != null) mask |= W_START_DATE;
+        if (w.getEndDate() != null) mask |= W_END_DATE;
+        if (w.getStatus() != null) mask |= W_STATUS;
+        if (w.getPerson() != null) mask |= W_PERSON;
+        if (user != null) mask |= W_USER;
+        if (user != null && withPassword && user.getUserPassword() != null) mask |= W_PASSWORD;
+        if (user != null && userRef) mask |= W_USER_REF;
+
+        out.putShort((short) mask);
+        if ((mask & W_ID) != 0) out.putLong(w.getId());
+        if ((mask & W_NAME) != 0) writeString(w.getName(), out);
+        if ((mask & W_COORDINATES) != 0) writeCoordinates(w.getCoordinates(), out);
+        if ((mask & W_CREATION_DATE) != 0) writeDateTime(w.getCreationDate(), out);
+        if ((mask & W_SALARY) != 0) out.putInt(w.getSalary());
+        if ((mask & W_START_DATE) != 0) out.putInt((int) w.getStartDate().toEpochDay());
+        if ((mask & W_END_DATE) != 0) out.putLong(w.getEndDate().getTime());
+        if ((mask & W_STATUS) != 0) writeEnum(w.getStatus(), out);
+        if ((mask & W_PERSON) != 0) writePerson(w.getPerson(), out);
+        if ((mask & W_USER) != 0) {
+            out.putLong(user.getUserId());
+            if ((mask & W_USER_REF) == 0) {
+                writeString(user.getUserName(), out);
+            }
+        }
+        if ((mask & W_PASSWORD) != 0) writeString(user.getUserPassword(), out);
+    }
+
+    public static Worker readWorker(ByteBuffer in) {
+        return readWorker(in, null);
+    }
+
+    private static Worker readWorker(ByteBuffer in, Map<Long, User> users) {
+        int mask = in.getShort() & 0xffff;
+        Long id = (mask & W_ID) != 0 ? in.getLong() : null;
+        String name = (mask & W_NAME) != 0 ? readString(in) : null;
+        Coordinates coordinates = (mask & W_COORDINATES) != 0 ? readCoordinates(in) : null;
+        LocalDateTime creationDate = (mask & W_CREATION_DATE) != 0 ? readDateTime(in) : null;
+        Integer salary = (mask & W_SALARY) != 0 ? in.getInt() : null;
+        LocalDate startDate = (mask & W_START_DATE) != 0 ? LocalDate.ofEpochDay(in.getInt()) : null;
+        Date endDate = (mask & W_END_DATE) != 0 ? new Date(in.getLong()) : null;
+        Status status = (mask & W_STATUS) != 0 ? readEnum(Status.values(), in) : null;
+        Person person = (mask & W_PERSON) != 0 ? readPerson(in) : null;
+        User user = null;
+        if ((mask & W_USER) != 0) {
+            long userId = in.getLong();
+            if ((mask & W_USER_REF) != 0) {
+                user = users == null ? null : users.get(userId);
+                if (user == null) {
+                    user = new User(null, null);
+                    user.setUserId(userId);
+                }
+            } else {
+                user = new User(readString(in), null);
+                user.setUserId(userId);
+            }
+        }
+        if ((mask & W_PASSWORD) != 0) {
+            String password = readString(in);
+            if (user != null) {
+                user.setUserPassword(password);
+            }
+        }
+        return Worker.restore(id, name, coordinates, creationDate, salary, startDate, endDate, status, person, user);
+    }
+
+    private static void writeCoordinates(Coordinates c, ByteBuffer out) {
+        out.putFloat(c.getX());
+        out.putInt(c.getY());
+    }
+
+    private static Coordinates readCoordinates(ByteBuffer in) {
+        float x = in.getFloat();
+        return new Coordinates(x, in.getInt());
+    }
+
+    private static void writePerson(Person p, ByteBuffer out) {
+        out.putFloat(p.getHeight());
+        out.putInt(p.getWeight() == null ? -1 : p.getWeight());
+        writeEnum(p.getHairColor(), out);
+    }
+
+    private static Person readPerson(ByteBuffer in) {
+        float height = in.getFloat();
+        int weight = in.getInt();
+        Color color = readEnum(Color.values(), in);
+        return new Person(height, weight < 0 ? null : weight, color);
+    }
+
+    private static void writeDateTime(LocalDateTime dateTime, ByteBuffer out) {
+        out.putLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.putInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeEnum(Enum<?> value, ByteBuffer out) {
+        out.put(value == null ? -1 : (byte) value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(E[] values, ByteBuffer in) {
+        byte ordinal = in.get();
+        return ordinal < 0 || ordinal >= values.length ? null : values[ordinal];
+    }
+
+    /**
+     * Длина пишется в {@code short}, поэтому строка длиннее {@link Short#MAX_VALUE} байт UTF-8 не кодируется
+     *
+     * @throws IllegalArgumentException если строка не помещается
+     */
+    private static void writeString(String s, ByteBuffer out) {
+        if (s == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("String of %d bytes exceeds %d",
+                    bytes.length, Short.MAX_VALUE));
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        short length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
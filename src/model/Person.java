@@ -3,6 +3,9 @@ package model;
 import java.io.Serializable;
 
 public class Person implements Serializable {
+    /** значение, вычисленное для исходной версии класса: старые клиенты шлют его в Java-сериализации */
+    private static final long serialVersionUID = -2002778193442662474L;
+
     private Float height;
     private Integer weight;
     private Color hairColor;
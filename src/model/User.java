@@ -4,9 +4,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
-import java.security.NoSuchAlgorithmException;
 
 public class User extends Hasher implements Serializable {
+    /** значение исходной версии класса, см. {@link Message} */
+    private static final long serialVersionUID = -6107014373018971655L;
     static final Logger LOG = LoggerFactory.getLogger(User.class);
     private String userName;
     private String userPassword;
@@ -41,14 +42,10 @@ public class User extends Hasher implements Serializable {
         this.userId = userId;
     }
 
+    /**
+     * Пароль передаётся серверу как есть; хэш с солью пользователя считает сервер при регистрации и входе
+     */
     public static User createUser(String userName, String userPassword) {
-        User user = new User(userName, userPassword);
-        try {
-            Hasher hasher = new Hasher();
-            hasher.getSecurePassword(userPassword, hasher.getSalt());
-        } catch (NoSuchAlgorithmException e) {
-            LOG.debug(e.getLocalizedMessage());
-        }
-        return user;
+        return new User(userName, userPassword);
     }
 }
@@ -7,8 +7,13 @@ import java.time.LocalDateTime;
 import java.util.Date;
 
 
+/**
+ * {@code Worker} Элемент коллекции; id назначается сервером при вставке
+ */
 public class Worker implements Serializable {
-    private final long max = 100000;
+    /** значение исходной версии класса, см. {@link Message} */
+    private static final long serialVersionUID = 2117689414045346844L;
+
     private Long id;
     private String name;
     private Coordinates coordinates;
@@ -23,7 +28,6 @@ public class Worker implements Serializable {
 
     public Worker(String name, Coordinates coordinates, Integer salary,
                   LocalDate startDate, Date endDate, Status status, Person person, User user) {
-        this.id = (long) (Math.random()*max);
         this.name = name;
         this.coordinates = coordinates;
         this.creationDate = LocalDateTime.now();
@@ -40,7 +44,6 @@ public class Worker implements Serializable {
     }
 
     public Worker() {
-        this.id = (long) (Math.random()*max);
         this.creationDate = LocalDateTime.now();
 
     }
@@ -49,6 +52,25 @@ public class Worker implements Serializable {
                   Date endDate, Status status, Person person) {
     }
 
+    /**
+     * Восстанавливает элемент из бинарного или колоночного представления без генерации id и даты создания
+     */
+    public static Worker restore(Long id, String name, Coordinates coordinates, LocalDateTime creationDate,
+                                 Integer salary, LocalDate startDate, Date endDate, Status status, Person person,
+                                 User user) {
+        Worker worker = new Worker(user);
+        worker.id = id;
+        worker.name = name;
+        worker.coordinates = coordinates;
+        worker.creationDate = creationDate;
+        worker.salary = salary;
+        worker.startDate = startDate;
+        worker.endDate = endDate;
+        worker.status = status;
+        worker.person = person;
+        return worker;
+    }
+
 
     @Override
     public String toString() {
@@ -70,6 +92,10 @@ public class Worker implements Serializable {
         return id;
     }
 
+    Long getRawId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -147,4 +173,12 @@ public class Worker implements Serializable {
         return this.user.getUserId();
     }
 
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
 }
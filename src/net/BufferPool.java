@@ -0,0 +1,49 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@code BufferPool} Ограниченный пул direct-буферов для приёма датаграмм
+ */
+public class BufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final int bufferSize;
+
+    public BufferPool(int capacity, int bufferSize) {
+        this.buffers = new ArrayBlockingQueue<>(capacity);
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < capacity; i++) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /**
+     * Берёт свободный буфер из пула, ожидая его возврата, если пул пуст
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = buffers.take();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Возвращает буфер в пул после обработки запроса
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect() && buffer.capacity() == bufferSize) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    public int available() {
+        return buffers.size();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,145 @@
+package net;
+
+import model.MessageCodec;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code ChunkedResponses} Нарезка длинных ответов на датаграммы размером с MTU и хранение
+ * недавно отправленных ответов для повторной отправки потерянных частей.
+ *
+ * <p>Формат части: {@code [MAGIC][VERSION][CHUNK][responseId:long][seq:int][total:int][fragment]}.
+ * Клиент склеивает фрагменты по возрастанию {@code seq} и декодирует результат через
+ * {@link MessageCodec#read(ByteBuffer)}; недостающие части запрашиваются командой {@code RESEND}.
+ *
+ * <p>Хранимые ответы ограничены и числом, и суммарным размером: при превышении любого предела
+ * вытесняются самые старые, а ответ больше {@code maxBytes} не хранится вовсе.
+ *
+ * <p>Идентификаторы ответов случайные, а повторная отправка возможна только на адрес, которому
+ * ответ был отправлен: {@code RESEND} не требует сессии, поэтому чужой ответ нельзя ни угадать,
+ * ни запросить с другого адреса. Ответы с токеном сессии сюда не регистрируются вовсе.
+ */
+public class ChunkedResponses {
+
+    public static final int CHUNK_HEADER_SIZE = MessageCodec.HEADER_SIZE + Long.BYTES + Integer.BYTES * 2;
+
+    private final int chunkPayload;
+    private final int maxResponses;
+    private final long maxBytes;
+    private long retainedBytes;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<Long, Entry> responses;
+
+    private static class Entry {
+        final byte[] payload;
+        final InetSocketAddress client;
+        final long createdAt;
+
+        Entry(byte[] payload, InetSocketAddress client, long createdAt) {
+            this.payload = payload;
+            this.client = client;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * @param chunkSize    полный размер датаграммы части, включая заголовок
+     * @param maxResponses сколько последних ответов хранить для повторной отправки
+     * @param maxBytes     суммарный размер хранимых ответов
+     * @param ttlMillis    сколько хранить ответ для повторной отправки
+     */
+    public ChunkedResponses(int chunkSize, int maxResponses, long maxBytes, long ttlMillis) {
+        this.chunkPayload = chunkSize - CHUNK_HEADER_SIZE;
+        this.maxResponses = maxResponses;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.responses = new LinkedHashMap<>(16, 0.75f, false);
+    }
+
+    /**
+     * Случайный идентификатор для ответа, который не хранится для повторной отправки
+     */
+    public long nextId() {
+        return random.nextLong();
+    }
+
+    /**
+     * Регистрирует закодированный ответ клиенту {@code client} и возвращает его идентификатор
+     */
+    public long register(byte[] payload, InetSocketAddress client) {
+        if (payload.length > maxBytes) {
+            return nextId();
+        }
+        synchronized (responses) {
+            long id = nextId();
+            while (responses.containsKey(id)) {
+                id = nextId();
+            }
+            responses.put(id, new Entry(payload, client, System.currentTimeMillis()));
+            retainedBytes += payload.length;
+            Iterator<Entry> eldest = responses.values().iterator();
+            while (responses.size() > maxResponses || retainedBytes > maxBytes) {
+                retainedBytes -= eldest.next().payload.length;
+                eldest.remove();
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Ответ для повторной отправки или {@code null}, если он уже вытеснен, устарел или был отправлен
+     * на другой адрес
+     */
+    public byte[] lookup(long responseId, InetSocketAddress client) {
+        synchronized (responses) {
+            Entry entry = responses.get(responseId);
+            if (entry == null || !entry.client.equals(client)) {
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+                responses.remove(responseId);
+                retainedBytes -= entry.payload.length;
+                return null;
+            }
+            return entry.payload;
+        }
+    }
+
+    /**
+     * Суммарный размер хранимых ответов в байтах
+     */
+    public long getRetainedBytes() {
+        synchronized (responses) {
+            return retainedBytes;
+        }
+    }
+
+    public int chunkCount(int payloadLength) {
+        return Math.max(1, (payloadLength + chunkPayload - 1) / chunkPayload);
+    }
+
+    /**
+     * Пишет часть {@code seq} ответа в буфер; буфер должен вмещать {@code chunkSize} байт
+     */
+    public void writeChunk(long responseId, byte[] payload, int seq, ByteBuffer out) {
+        int total = chunkCount(payload.length);
+        if (seq < 0 || seq >= total) {
+            throw new IllegalArgumentException(String.format("Chunk %d out of range 0..%d", seq, total - 1));
+        }
+        int offset = seq * chunkPayload;
+        int length = Math.min(chunkPayload, payload.length - offset);
+        out.put(MessageCodec.MAGIC);
+        out.put(MessageCodec.VERSION);
+        out.put((byte) MessageCodec.Format.CHUNK.ordinal());
+        out.putLong(responseId);
+        out.putInt(seq);
+        out.putInt(total);
+        out.put(payload, offset, length);
+    }
+}
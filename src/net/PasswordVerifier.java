@@ -0,0 +1,189 @@
+package net;
+
+import model.Hasher;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@code PasswordVerifier} Проверка паролей вне потоков обработки запросов.
+ *
+ * <p>Хэширование ({@link Hasher}) выполняется на отдельном пуле из {@code threads} потоков с очередью
+ * {@code queueDepth}; при переполнении задача отклоняется, и вход отвечает {@code BUSY}, а не отнимает
+ * процессор у команд коллекции. Перед пулом стоит кэш успешных проверок на {@code cacheTtlMillis}:
+ * ключ — имя пользователя и HMAC пароля на случайном ключе процесса, так что открытый пароль в памяти
+ * не хранится. Запись действительна только пока хранимый хэш в БД не изменился; неудачные попытки
+ * не кэшируются и каждый раз стоят полного хэширования.
+ */
+public class PasswordVerifier {
+
+    static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final ThreadPoolExecutor executor;
+    private final int cacheSize;
+    private final long cacheTtlMillis;
+    private final Map<String, Entry> verified;
+    private final ThreadLocal<Mac> mac;
+    private final AtomicLong hashed = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile String dummyHash;
+
+    private static class Entry {
+        final String stored;
+        final long expiresAt;
+
+        Entry(String stored, long expiresAt) {
+            this.stored = stored;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public PasswordVerifier(int threads, int queueDepth, int cacheSize, long cacheTtlMillis) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth), r -> {
+            Thread t = new Thread(r, "hasher-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.cacheSize = cacheSize;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.verified = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PasswordVerifier.this.cacheSize;
+            }
+        };
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        SecretKeySpec keySpec = new SecretKeySpec(key, MAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance(MAC_ALGORITHM);
+                m.init(keySpec);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Сравнивает пароль с хранимым хэшем. Если пользователя нет ({@code stored == null}), хэшируется
+     * заглушка, чтобы по времени ответа нельзя было отличить неизвестное имя от неверного пароля.
+     *
+     * @return future с результатом; завершается {@link RejectedExecutionException}, если пул перегружен
+     */
+    public CompletableFuture<Boolean> verify(String userName, String password, String stored) {
+        if (password == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        String key = stored == null ? null : cacheKey(userName, password);
+        if (key != null && isVerified(key, stored)) {
+            cacheHits.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                hashed.incrementAndGet();
+                if (stored == null) {
+                    Hasher.verify(password, dummyHash());
+                    return false;
+                }
+                boolean ok = Hasher.verify(password, stored);
+                if (ok) {
+                    synchronized (verified) {
+                        verified.put(key, new Entry(stored, System.currentTimeMillis() + cacheTtlMillis));
+                    }
+                }
+                return ok;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            CompletableFuture<Boolean> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Новый хэш пароля, посчитанный на пуле хэширования
+     */
+    public CompletableFuture<String> hash(String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                hashed.incrementAndGet();
+                return Hasher.hash(password);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private boolean isVerified(String key, String stored) {
+        synchronized (verified) {
+            Entry entry = verified.get(key);
+            if (entry == null) {
+                return false;
+            }
+            if (System.currentTimeMillis() > entry.expiresAt || !entry.stored.equals(stored)) {
+                verified.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private String cacheKey(String userName, String password) {
+        byte[] digest = mac.get().doFinal(password.getBytes(StandardCharsets.UTF_8));
+        return userName + '\0' + Base64.getEncoder().encodeToString(digest);
+    }
+
+    private String dummyHash() {
+        String hash = dummyHash;
+        if (hash == null) {
+            hash = Hasher.hash("");
+            dummyHash = hash;
+        }
+        return hash;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public long getHashed() {
+        return hashed.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PasswordVerifier{threads=%d, queue=%d, hashed=%d, cacheHits=%d, rejected=%d}",
+                executor.getPoolSize(), executor.getQueue().size(), hashed.get(), cacheHits.get(), rejected.get());
+    }
+}
@@ -0,0 +1,148 @@
+package net;
+
+import net.interfaces.InterfaceRequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * {@code RequestExecutor} Ограниченный пул обработки запросов с очередью фиксированной длины
+ * и явной политикой поведения при перегрузке
+ */
+public class RequestExecutor implements InterfaceRequestExecutor {
+
+    static final Logger LOG = LoggerFactory.getLogger(RequestExecutor.class);
+
+    public enum OverloadPolicy {
+        /** отклонить новый запрос и ответить клиенту "busy" */
+        REJECT_BUSY,
+        /** выбросить самый старый запрос из очереди и поставить новый */
+        DROP_OLDEST;
+
+        public static OverloadPolicy fromStr(String value) {
+            for (OverloadPolicy p : OverloadPolicy.values()) {
+                if (p.name().equalsIgnoreCase(value)) {
+                    return p;
+                }
+            }
+            return REJECT_BUSY;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final OverloadPolicy policy;
+    private final Consumer<Runnable> onDrop;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param threads    число потоков обработки
+     * @param queueDepth максимальная длина очереди ожидающих запросов
+     * @param policy     политика при переполнении очереди
+     * @param onDrop     вызывается для каждого отброшенного запроса (ответ "busy", возврат буфера)
+     */
+    public RequestExecutor(int threads, int queueDepth, OverloadPolicy policy, Consumer<Runnable> onDrop) {
+        this.policy = policy;
+        this.onDrop = onDrop;
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueDepth),
+                new OverloadHandler()
+        );
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    @Override
+    public long getCompleted() {
+        return executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public OverloadPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestExecutor{" +
+                "policy=" + policy +
+                ", queue=" + getQueueDepth() + "/" + getQueueCapacity() +
+                ", active=" + getActiveThreads() + "/" + getPoolSize() +
+                ", completed=" + getCompleted() +
+                ", rejected=" + getRejected() +
+                ", dropped=" + getDropped() +
+                '}';
+    }
+
+    private class OverloadHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                dropped.incrementAndGet();
+                onDrop.accept(task);
+                return;
+            }
+            switch (policy) {
+                case DROP_OLDEST:
+                    Runnable oldest = pool.getQueue().poll();
+                    if (oldest != null) {
+                        dropped.incrementAndGet();
+                        onDrop.accept(oldest);
+                    }
+                    pool.execute(task);
+                    break;
+                case REJECT_BUSY:
+                default:
+                    rejected.incrementAndGet();
+                    onDrop.accept(task);
+                    break;
+            }
+            LOG.debug(RequestExecutor.this.toString());
+        }
+    }
+}
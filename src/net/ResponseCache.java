@@ -0,0 +1,95 @@
+package net;
+
+import model.CommandCollection;
+import model.MessageCodec;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@code ResponseCache} Закодированные ответы на команды чтения, привязанные к версии коллекции.
+ * Одновременные одинаковые запросы объединяются: ответ строит только первый, остальные ждут его результат.
+ */
+public class ResponseCache {
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Key {
+        final CommandCollection command;
+        final MessageCodec.Format format;
+
+        Key(CommandCollection command, MessageCodec.Format format) {
+            this.command = command;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return command == key.command && format == key.format;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(command, format);
+        }
+    }
+
+    private static final class Entry {
+        final long version;
+        final CompletableFuture<byte[]> bytes = new CompletableFuture<>();
+
+        Entry(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Возвращает ответ для версии коллекции {@code version} (или более новой), строя его при необходимости
+     *
+     * @return закодированный ответ или {@code null}, если построить его не удалось
+     */
+    public byte[] get(CommandCollection command, MessageCodec.Format format, long version,
+                      Supplier<byte[]> builder) {
+        Key key = new Key(command, format);
+        while (true) {
+            Entry current = entries.get(key);
+            if (current != null && current.version >= version) {
+                hits.incrementAndGet();
+                return current.bytes.join();
+            }
+            Entry fresh = new Entry(version);
+            boolean owner = current == null
+                    ? entries.putIfAbsent(key, fresh) == null
+                    : entries.replace(key, current, fresh);
+            if (owner) {
+                misses.incrementAndGet();
+                byte[] bytes = null;
+                try {
+                    bytes = builder.get();
+                } finally {
+                    fresh.bytes.complete(bytes);
+                    if (bytes == null) {
+                        entries.remove(key, fresh);
+                    }
+                }
+                return bytes;
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
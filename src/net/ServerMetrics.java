@@ -0,0 +1,402 @@
+package net;
+
+import model.CommandCollection;
+import net.interfaces.InterfaceRequestExecutor;
+import net.interfaces.InterfaceServerMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * {@code ServerMetrics} Счётчики и гистограммы задержек по командам.
+ *
+ * <p>Запрос проходит этапы {@link Stage}: ожидание в очереди после приёма датаграммы, подготовка
+ * (декодирование, проверка сессии, ожидание разрешения на работу с БД), выполнение команды в памяти,
+ * работа с БД, сериализация и отправка ответа. Время БД, сериализации и отправки копится в {@link Trace}
+ * текущего потока и вычитается из выполнения, поэтому этапы не пересекаются. Кроме задержек считаются
+ * размеры запросов и ответов, ошибки по командам, ошибки декодирования и отклонённые при перегрузке запросы.
+ */
+public class ServerMetrics implements InterfaceServerMetrics {
+
+    static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public enum Stage {
+        /** приём датаграммы → начало обработки */
+        QUEUE("queue"),
+        /** начало обработки → начало выполнения команды */
+        PREPARE("prepare"),
+        /** выполнение команды в памяти, без БД, сериализации и отправки ответа */
+        EXECUTE("execute"),
+        /** работа с БД: от запроса соединения из пула до его возврата, включая ожидание свободного */
+        DB("db"),
+        /** кодирование ответа */
+        SERIALIZE("serialize"),
+        /** отправка датаграмм ответа */
+        SEND("send");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static Stage fromStr(String value) {
+            for (Stage stage : Stage.values()) {
+                if (stage.name.equalsIgnoreCase(value)) {
+                    return stage;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class CommandStats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final Histogram[] stages = new Histogram[Stage.values().length];
+        final Histogram requestBytes = new Histogram();
+        final Histogram responseBytes = new Histogram();
+
+        CommandStats() {
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new Histogram();
+            }
+        }
+    }
+
+    /**
+     * {@code Trace} Отметки времени одного запроса; живёт в потоке обработки от начала до конца запроса
+     */
+    public static class Trace {
+        private final long receivedAt;
+        private final long startedAt;
+        private final int requestBytes;
+        private long executingAt;
+        private long dbNanos;
+        private long serializeNanos;
+        private long sendNanos;
+        private int responseBytes;
+        private CommandCollection command;
+        private boolean failed;
+
+        Trace(long receivedAt, long startedAt, int requestBytes) {
+            this.receivedAt = receivedAt;
+            this.startedAt = startedAt;
+            this.requestBytes = requestBytes;
+        }
+
+        public void setCommand(CommandCollection command) {
+            this.command = command;
+        }
+
+        /**
+         * Отмечает начало выполнения команды
+         */
+        public void executing() {
+            this.executingAt = System.nanoTime();
+        }
+
+        public void failed() {
+            this.failed = true;
+        }
+    }
+
+    private final AtomicReferenceArray<CommandStats> commands =
+            new AtomicReferenceArray<>(CommandCollection.values().length);
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder decodeErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final IntSupplier collectionSize;
+    private final ResponseCache responseCache;
+    private final InterfaceRequestExecutor executor;
+    private volatile long startedAt = System.nanoTime();
+
+    /**
+     * @param collectionSize текущий размер коллекции для отчёта
+     * @param responseCache  кэш ответов, чьи попадания и промахи входят в отчёт
+     * @param executor       исполнитель запросов, чья очередь, занятые потоки и отказы входят в отчёт
+     */
+    public ServerMetrics(IntSupplier collectionSize, ResponseCache responseCache, InterfaceRequestExecutor executor) {
+        this.collectionSize = collectionSize;
+        this.responseCache = responseCache;
+        this.executor = executor;
+    }
+
+    /**
+     * Начинает запрос в текущем потоке
+     *
+     * @param receivedAt   {@link System#nanoTime()} приёма датаграммы
+     * @param requestBytes размер датаграммы
+     */
+    public Trace begin(long receivedAt, int requestBytes) {
+        Trace trace = new Trace(receivedAt, System.nanoTime(), requestBytes);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Добавляет время работы с БД к запросу текущего потока; вне запроса ничего не делает
+     */
+    public void addDb(long nanos) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.dbNanos += nanos;
+        }
+    }
+
+    /**
+     * Добавляет время кодирования ответа к запросу текущего потока; вне запроса ничего не делает
+     */
+    public void addSerialize(long nanos) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.serializeNanos += nanos;
+        }
+    }
+
+    /**
+     * Добавляет время отправки ответа к запросу текущего потока; вне запроса ничего не делает
+     */
+    public void addSend(long nanos) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.sendNanos += nanos;
+        }
+    }
+
+    /**
+     * Добавляет размер отправленного ответа к запросу текущего потока
+     */
+    public void addResponse(int bytes) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.responseBytes += bytes;
+        }
+    }
+
+    /**
+     * Завершает запрос: записывает этапы в гистограммы его команды. Запрос, который не удалось
+     * декодировать, считается только ошибкой декодирования.
+     */
+    public void end(Trace trace) {
+        current.remove();
+        long now = System.nanoTime();
+        requests.increment();
+        if (trace.failed) {
+            errors.increment();
+        }
+        if (trace.command == null) {
+            decodeErrors.increment();
+            return;
+        }
+        CommandStats stats = stats(trace.command);
+        stats.requests.increment();
+        if (trace.failed) {
+            stats.errors.increment();
+        }
+        stats.requestBytes.record(trace.requestBytes);
+        if (trace.responseBytes > 0) {
+            stats.responseBytes.record(trace.responseBytes);
+        }
+        long nested = trace.dbNanos + trace.serializeNanos + trace.sendNanos;
+        stats.stages[Stage.QUEUE.ordinal()].record(trace.startedAt - trace.receivedAt);
+        if (trace.executingAt == 0) {
+            stats.stages[Stage.PREPARE.ordinal()].record(now - trace.startedAt - nested);
+        } else {
+            stats.stages[Stage.PREPARE.ordinal()].record(trace.executingAt - trace.startedAt);
+            stats.stages[Stage.EXECUTE.ordinal()].record(now - trace.executingAt - nested);
+        }
+        recordIfAny(stats, Stage.DB, trace.dbNanos);
+        recordIfAny(stats, Stage.SERIALIZE, trace.serializeNanos);
+        recordIfAny(stats, Stage.SEND, trace.sendNanos);
+    }
+
+    private static void recordIfAny(CommandStats stats, Stage stage, long nanos) {
+        if (nanos > 0) {
+            stats.stages[stage.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Запрос отклонён при перегрузке и не обрабатывался
+     */
+    public void rejected() {
+        rejected.increment();
+    }
+
+    private CommandStats stats(CommandCollection command) {
+        int i = command.ordinal();
+        CommandStats stats = commands.get(i);
+        if (stats == null) {
+            commands.compareAndSet(i, null, new CommandStats());
+            stats = commands.get(i);
+        }
+        return stats;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getDecodeErrors() {
+        return decodeErrors.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public int getCollectionSize() {
+        return collectionSize.getAsInt();
+    }
+
+    @Override
+    public long getResponseCacheHits() {
+        return responseCache.getHits();
+    }
+
+    @Override
+    public long getResponseCacheMisses() {
+        return responseCache.getMisses();
+    }
+
+    @Override
+    public int getExecutorQueueDepth() {
+        return executor.getQueueDepth();
+    }
+
+    @Override
+    public int getExecutorActiveThreads() {
+        return executor.getActiveThreads();
+    }
+
+    @Override
+    public long getExecutorCompleted() {
+        return executor.getCompleted();
+    }
+
+    @Override
+    public long getExecutorRejected() {
+        return executor.getRejected();
+    }
+
+    @Override
+    public long getExecutorDropped() {
+        return executor.getDropped();
+    }
+
+    /**
+     * Доля запросов чтения, обслуженных из кэша ответов, в процентах
+     */
+    private double responseCacheHitRate() {
+        long hits = getResponseCacheHits();
+        long total = hits + getResponseCacheMisses();
+        return total == 0 ? 0 : 100.0 * hits / total;
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * @return процентиль в микросекундах или -1, если команда или этап неизвестны
+     */
+    @Override
+    public long getStagePercentile(String command, String stage, double percentile) {
+        CommandCollection cmd = CommandCollection.fromCmd(command);
+        Stage s = Stage.fromStr(stage);
+        if (cmd == CommandCollection.UNKNOWN || s == null) {
+            return -1;
+        }
+        CommandStats stats = commands.get(cmd.ordinal());
+        return stats == null ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.stages[s.ordinal()].getPercentile(percentile));
+    }
+
+    /**
+     * Текстовый отчёт: общие счётчики, затем по каждой встречавшейся команде процентили этапов
+     * в микросекундах и размеров запроса и ответа в байтах
+     */
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("uptime=%ds requests=%d errors=%d decodeErrors=%d rejected=%d collection=%d%n",
+                getUptimeSeconds(), getRequests(), getErrors(), getDecodeErrors(), getRejected(),
+                getCollectionSize()));
+        out.append(String.format("executor queue=%d active=%d completed=%d rejected=%d dropped=%d%n",
+                getExecutorQueueDepth(), getExecutorActiveThreads(), getExecutorCompleted(),
+                getExecutorRejected(), getExecutorDropped()));
+        out.append(String.format("responseCache hits=%d misses=%d hitRate=%.1f%%%n",
+                getResponseCacheHits(), getResponseCacheMisses(), responseCacheHitRate()));
+        out.append(String.format("%-16s %-12s %10s %10s %10s %10s %10s %10s %10s%n",
+                "command", "metric", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (CommandCollection cmd : CommandCollection.values()) {
+            CommandStats stats = commands.get(cmd.ordinal());
+            if (stats == null) {
+                continue;
+            }
+            out.append(String.format("%-16s requests=%d errors=%d%n",
+                    cmd.getCommand(), stats.requests.sum(), stats.errors.sum()));
+            for (Stage stage : Stage.values()) {
+                row(out, cmd, stage.getName() + ",us", stats.stages[stage.ordinal()], TimeUnit.MICROSECONDS);
+            }
+            row(out, cmd, "request,B", stats.requestBytes, null);
+            row(out, cmd, "response,B", stats.responseBytes, null);
+        }
+        return out.toString();
+    }
+
+    private static void row(StringBuilder out, CommandCollection cmd, String metric, Histogram histogram,
+                            TimeUnit unit) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        out.append(String.format("%-16s %-12s %10d %10.1f", cmd.getCommand(), metric, histogram.getCount(),
+                unit == null ? histogram.getMean() : histogram.getMean() / unit.toNanos(1)));
+        for (double p : PERCENTILES) {
+            out.append(String.format(" %10d", convert(histogram.getPercentile(p), unit)));
+        }
+        out.append(String.format(" %10d%n", convert(histogram.getMax(), unit)));
+    }
+
+    private static long convert(long value, TimeUnit unit) {
+        return unit == null ? value : unit.convert(value, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < commands.length(); i++) {
+            commands.set(i, null);
+        }
+        requests.reset();
+        errors.reset();
+        decodeErrors.reset();
+        rejected.reset();
+        startedAt = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ServerMetrics{requests=%d, errors=%d, decodeErrors=%d, rejected=%d, collection=%d, "
+                        + "queue=%d, active=%d, cacheHits=%d, cacheMisses=%d}",
+                getRequests(), getErrors(), getDecodeErrors(), getRejected(), getCollectionSize(),
+                getExecutorQueueDepth(), getExecutorActiveThreads(), getResponseCacheHits(), getResponseCacheMisses());
+    }
+}
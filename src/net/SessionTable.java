@@ -0,0 +1,86 @@
+package net;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code SessionTable} Сессии, открытые командой {@code LOGIN}: непрозрачный токен → id пользователя.
+ *
+ * <p>Проверка запроса стоит одного чтения из {@link ConcurrentHashMap}; срок сессии продлевается при
+ * использовании. Просроченные сессии удаляются при обращении к ним и периодически при открытии новых.
+ */
+public class SessionTable {
+
+    static final int TOKEN_BYTES = 16;
+    static final int PURGE_EVERY = 1024;
+
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong opened = new AtomicLong();
+
+    private static class Session {
+        final long userId;
+        volatile long expiresAt;
+
+        Session(long userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public SessionTable(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Открывает сессию пользователя и возвращает её токен
+     */
+    public String open(long userId) {
+        if (opened.incrementAndGet() % PURGE_EVERY == 0) {
+            purge();
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(userId, System.currentTimeMillis() + ttlMillis));
+        return token;
+    }
+
+    /**
+     * @return id пользователя сессии или {@code null}, если токен неизвестен или просрочен
+     */
+    public Long validate(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now > session.expiresAt) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.expiresAt = now + ttlMillis;
+        return session.userId;
+    }
+
+    public void close(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    public void purge() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> now > session.expiresAt);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,139 @@
+package net;
+
+import net.interfaces.InterfaceRequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * {@code VirtualRequestExecutor} Запускает каждый запрос в отдельном виртуальном потоке.
+ * Число одновременно обрабатываемых запросов ограничено {@code maxInFlight}, лишние запросы отклоняются.
+ *
+ * <p>Ограничивается только число запросов в работе; одновременную работу с БД ограничивает семафор
+ * {@code server.db.permits} в {@code ServerUp}, общий для обоих режимов. Очереди здесь нет: глубиной
+ * очереди считаются запросы, чей поток создан, но ещё не начал выполнение, а вытеснения старых запросов
+ * не бывает, поэтому {@link #getDropped()} всегда 0.
+ */
+public class VirtualRequestExecutor implements InterfaceRequestExecutor {
+
+    static final Logger LOG = LoggerFactory.getLogger(VirtualRequestExecutor.class);
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Consumer<Runnable> onDrop;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public VirtualRequestExecutor(int maxInFlight, Consumer<Runnable> onDrop) {
+        this.executor = newVirtualThreadPerTaskExecutor();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.onDrop = onDrop;
+    }
+
+    /**
+     * Виртуальные потоки появились в JDK 21; на более старой JVM режим недоступен
+     */
+    public static boolean isSupported() {
+        return lookupFactory() != null;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!inFlight.tryAcquire()) {
+            rejected.incrementAndGet();
+            onDrop.accept(task);
+            return;
+        }
+        pending.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                pending.decrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    completed.incrementAndGet();
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            inFlight.release();
+            rejected.incrementAndGet();
+            onDrop.accept(task);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return pending.get();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @Override
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Вытеснения нет, отклонённые запросы считает {@link #getRejected()}
+     */
+    @Override
+    public long getDropped() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualRequestExecutor{" +
+                "inFlight=" + getActiveThreads() + "/" + maxInFlight +
+                ", pending=" + getQueueDepth() +
+                ", completed=" + getCompleted() +
+                ", rejected=" + getRejected() +
+                '}';
+    }
+
+    private static Method lookupFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = lookupFactory();
+        if (factory == null) {
+            throw new IllegalStateException("Virtual threads require JDK 21+");
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
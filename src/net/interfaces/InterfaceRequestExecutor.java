@@ -0,0 +1,12 @@
+package net.interfaces;
+
+public interface InterfaceRequestExecutor {
+
+    void execute(Runnable task);
+    void shutdown();
+    int getQueueDepth();
+    int getActiveThreads();
+    long getCompleted();
+    long getRejected();
+    long getDropped();
+}
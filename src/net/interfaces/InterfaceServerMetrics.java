@@ -0,0 +1,36 @@
+package net.interfaces;
+
+import javax.management.MXBean;
+
+/**
+ * {@code InterfaceServerMetrics} Метрики сервера, доступные через JMX
+ */
+@MXBean
+public interface InterfaceServerMetrics {
+
+    long getRequests();
+    long getErrors();
+    long getDecodeErrors();
+    long getRejected();
+    int getCollectionSize();
+    long getResponseCacheHits();
+    long getResponseCacheMisses();
+    /** запросы в очереди исполнителя */
+    int getExecutorQueueDepth();
+    /** потоки исполнителя, занятые запросами */
+    int getExecutorActiveThreads();
+    long getExecutorCompleted();
+    /** запросы, отклонённые исполнителем при перегрузке */
+    long getExecutorRejected();
+    /** запросы, вытесненные из очереди исполнителя */
+    long getExecutorDropped();
+    long getUptimeSeconds();
+
+    /**
+     * Процентиль этапа команды в микросекундах, например {@code ("show", "execute", 99)}
+     */
+    long getStagePercentile(String command, String stage, double percentile);
+
+    String dump();
+    void reset();
+}
@@ -0,0 +1,103 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageCodecTest {
+
+    /**
+     * {@code baseline-insert.bin} — запрос INSERT, сериализованный исходными классами {@code model}
+     * без заголовка, как его отправляет старый клиент
+     */
+    @Test
+    void readsBaselineJavaPayload() throws IOException {
+        byte[] bytes;
+        try (InputStream in = MessageCodecTest.class.getResourceAsStream("baseline-insert.bin")) {
+            assertNotNull(in);
+            bytes = in.readAllBytes();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(MessageCodec.Format.LEGACY, MessageCodec.detect(buffer));
+        Message message = MessageCodec.read(buffer);
+        assertBaselineInsert(message);
+
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        MessageCodec.write(message, MessageCodec.Format.JAVA, out);
+        out.flip();
+        assertBaselineInsert(MessageCodec.read(out));
+    }
+
+    /**
+     * Ответ старому клиенту читается обычным {@link ObjectInputStream}, как это делает исходный клиент
+     */
+    @Test
+    void answersLegacyClientWithPlainJavaStream() throws Exception {
+        byte[] bytes;
+        try (InputStream in = MessageCodecTest.class.getResourceAsStream("baseline-insert.bin")) {
+            assertNotNull(in);
+            bytes = in.readAllBytes();
+        }
+        ByteBuffer request = ByteBuffer.wrap(bytes);
+        MessageCodec.Format format = MessageCodec.detect(request);
+        Message message = MessageCodec.read(request);
+
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        MessageCodec.write(message, format, out);
+        out.flip();
+        byte[] reply = new byte[out.remaining()];
+        out.get(reply);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(reply))) {
+            assertBaselineInsert((Message) ois.readObject());
+        }
+    }
+
+    @Test
+    void rejectsStringsLongerThanTheLengthField() {
+        Worker worker = new Worker(new User("alice", null));
+        worker.setName("x".repeat(Short.MAX_VALUE + 1));
+        Message message = new Message(CommandCollection.INSERT, worker);
+        assertThrows(IllegalArgumentException.class,
+                () -> MessageCodec.write(message, MessageCodec.Format.BINARY, ByteBuffer.allocate(128 * 1024)));
+    }
+
+    @Test
+    void rejectsOversizedCounts() {
+        ByteBuffer packet = ByteBuffer.allocate(64);
+        packet.put(MessageCodec.MAGIC).put(MessageCodec.VERSION).put((byte) MessageCodec.Format.BINARY.ordinal());
+        packet.put((byte) CommandCollection.RESEND.ordinal());
+        packet.putShort((short) (1 << 8));
+        packet.putInt(Integer.MAX_VALUE);
+        packet.flip();
+        assertThrows(IOException.class, () -> MessageCodec.read(packet));
+
+        packet.putInt(packet.limit() - 4, -1);
+        packet.rewind();
+        assertThrows(IOException.class, () -> MessageCodec.read(packet));
+    }
+
+    private static void assertBaselineInsert(Message message) {
+        assertEquals(CommandCollection.INSERT, message.getCollection());
+        Worker worker = message.getWorker();
+        assertEquals(42L, worker.getId());
+        assertEquals("Bob", worker.getName());
+        assertEquals(5000, worker.getSalary());
+        assertEquals(LocalDate.of(2020, 1, 2), worker.getStartDate());
+        assertEquals(new Date(1600000000000L), worker.getEndDate());
+        assertEquals(20, worker.getCoordinates().getY());
+        assertEquals(70, worker.getPerson().getWeight());
+        assertEquals("alice", worker.getUser().getUserName());
+        assertEquals("secret", worker.getUser().getUserPassword());
+        assertEquals(7L, worker.getUserId());
+    }
+}